@@ -21,6 +21,11 @@ public class BNLJOperator extends JoinOperator {
 
         this.numBuffers = transaction.getNumMemoryPages();
 
+        // Read ahead of the left table while the current block is being joined, if there are
+        // buffers to spare. The right table is scanned again for every block, so reading ahead of
+        // it would only hold buffers that the left block could use.
+        this.setPrefetchWindow(numBuffers > 3 ? 1 : 0);
+
         // for HW4
         this.stats = this.estimateStats();
         this.cost = this.estimateIOCost();
@@ -30,11 +35,18 @@ public class BNLJOperator extends JoinOperator {
         return new BNLJIterator();
     }
 
+    /**
+     * Returns the number of left pages joined at a time: every buffer except one for the right
+     * page, one for the output, and those holding left pages read ahead of the block.
+     */
+    private int getBlockSize() {
+        return Math.max(1, numBuffers - 2 - getPrefetchWindow());
+    }
+
     public int estimateIOCost() {
         //This method implements the the IO cost estimation of the Block Nested Loop Join
 
-        int usableBuffers = numBuffers -
-                            2; //Common mistake have to first calculate the number of usable buffers
+        int usableBuffers = getBlockSize();
 
         int numLeftPages = getLeftSource().getStats().getNumPages();
 
@@ -78,12 +90,12 @@ public class BNLJOperator extends JoinOperator {
         public BNLJIterator() throws QueryPlanException, DatabaseException {
             super();
             leftIterator = getPageIterator( getLeftTableName() );
-            rightIterator = getPageIterator( getRightTableName() );
+            rightIterator = getPageIterator( getRightTableName(), 0 );
 
             leftIterator.next();
             rightIterator.next();
 
-            leftRecordIterator = getBlockIterator( getLeftTableName(), leftIterator, numBuffers - 2 );
+            leftRecordIterator = getBlockIterator( getLeftTableName(), leftIterator, getBlockSize() );
             rightRecordIterator = getBlockIterator( getRightTableName(), rightIterator, 1 );
 
 
@@ -155,8 +167,8 @@ public class BNLJOperator extends JoinOperator {
             this.nextRecord = null;
             do {
                 if ( this.rightRecord != null ) {
-                    DataBox leftJoinValue = this.leftRecord.getValues().get( BNLJOperator.this.getLeftColumnIndex() );
-                    DataBox rightJoinValue = rightRecord.getValues().get( BNLJOperator.this.getRightColumnIndex() );
+                    DataBox leftJoinValue = this.leftRecord.getValue( BNLJOperator.this.getLeftColumnIndex() );
+                    DataBox rightJoinValue = rightRecord.getValue( BNLJOperator.this.getRightColumnIndex() );
                     if ( leftJoinValue.equals( rightJoinValue ) ) {
                         List<DataBox> valuesfromLeft = leftRecord.getValues();
                         List<DataBox> valuesfromRight = rightRecord.getValues();
@@ -180,12 +192,12 @@ public class BNLJOperator extends JoinOperator {
                     rightRecordIterator.mark();
                     resetLeftRecord();
                 } else if ( leftIterator.hasNext() ) {
-                    leftRecordIterator = BNLJOperator.this.getBlockIterator( getLeftTableName(), this.leftIterator, numBuffers - 2 );
+                    leftRecordIterator = BNLJOperator.this.getBlockIterator( getLeftTableName(), this.leftIterator, getBlockSize() );
                     advanceLeftIter();
                     leftRecordIterator.mark();
 
                     /** reset right record iterator for the next left page. */
-                    rightIterator = BNLJOperator.this.getPageIterator( this.getRightTableName() );
+                    rightIterator = BNLJOperator.this.getPageIterator( this.getRightTableName(), 0 );
 
                     /** initiate the right page */
                     rightIterator.next();
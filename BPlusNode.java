@@ -212,6 +212,26 @@ abstract class BPlusNode {
      */
     public abstract void remove(BaseTransaction transaction, DataBox key);
 
+    /**
+     * BPlusNode.find(t, meta, p, k) returns the record id of key k in the
+     * subtree rooted by the node on page p, or Optional.empty() if k isn't in
+     * it. Every node on the path to the leaf is read from meta's node cache
+     * (see BPlusNodeCache), or decoded and cached if it isn't there, and its
+     * keys are binary searched, so a lookup in a warm tree neither reads a
+     * page nor builds a node.
+     */
+    public static Optional<RecordId> find(BaseTransaction transaction,
+                                          BPlusTreeMetadata metadata, int pageNum,
+                                          DataBox key) {
+        while (true) {
+            BPlusNode node = fromBytes(transaction, metadata, pageNum);
+            if (node instanceof LeafNode) {
+                return ((LeafNode) node).getKey(key);
+            }
+            pageNum = ((InnerNode) node).findChild(key);
+        }
+    }
+
     // Helpers ///////////////////////////////////////////////////////////////////
     /** Get the page on which this node is persisted. */
     abstract Page getPage();
@@ -251,10 +271,15 @@ abstract class BPlusNode {
 
     /**
      * BPlusNode.fromBytes(m, p) loads a BPlusNode from page p of
-     * meta.getAllocator().
+     * meta.getAllocator(), or returns the node cached for page p, if there is
+     * one (see BPlusNodeCache).
      */
     public static BPlusNode fromBytes(BaseTransaction transaction, BPlusTreeMetadata metadata,
                                       int pageNum) {
+        BPlusNode node = metadata.getNodeCache().get(pageNum);
+        if (node != null) {
+            return node;
+        }
         Page p = metadata.getAllocator().fetchPage(transaction, pageNum);
         Buffer buf = p.getBuffer(transaction);
         byte b = buf.get();
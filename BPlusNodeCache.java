@@ -0,0 +1,51 @@
+package edu.berkeley.cs186.database.index;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A BPlusNodeCache holds the most recently used nodes of a B+ tree, decoded,
+ * by the page number they are persisted on. BPlusNode.fromBytes (and
+ * InnerNode.fromBytes and LeafNode.fromBytes) return the cached node of a page
+ * if there is one, so a traversal of a warm tree, e.g. a lookup with
+ * BPlusNode.find, doesn't deserialize any of the nodes on its path.
+ *
+ * A cached node is only valid as long as its page isn't written. Whenever a
+ * node syncs new bytes to its page, the page's entry is invalidated, and the
+ * node is decoded afresh the next time it is read. Once the cache holds
+ * `capacity` nodes, the least recently used one is evicted.
+ */
+class BPlusNodeCache {
+    // The number of nodes cached by trees that aren't given a capacity.
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final Map<Integer, BPlusNode> nodes;
+
+    BPlusNodeCache(final int capacity) {
+        this.nodes = new LinkedHashMap<Integer, BPlusNode>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, BPlusNode> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Returns the cached node of page `pageNum`, or null if there is none. */
+    synchronized BPlusNode get(int pageNum) {
+        return nodes.get(pageNum);
+    }
+
+    /** Caches `node`, the decoded contents of page `pageNum`. */
+    synchronized void put(int pageNum, BPlusNode node) {
+        nodes.put(pageNum, node);
+    }
+
+    /** Forgets the cached node of page `pageNum`, whose bytes have changed. */
+    synchronized void invalidate(int pageNum) {
+        nodes.remove(pageNum);
+    }
+
+    synchronized void clear() {
+        nodes.clear();
+    }
+}
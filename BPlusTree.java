@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.FileWriter;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.locks.StampedLock;
 
 import edu.berkeley.cs186.database.BaseTransaction;
 import edu.berkeley.cs186.database.common.Buffer;
@@ -52,6 +53,27 @@ import edu.berkeley.cs186.database.table.RecordId;
  *   fromDisk.get(new IntDataBox(0)); // Optional.empty()
  *   fromDisk.get(new IntDataBox(1)); // Optional.of(RecordId(1, 1))
  *   fromDisk.get(new IntDataBox(2)); // Optional.of(RecordId(2, 2))
+ *
+ * Lookups (get and scanEqual) can be run by many threads at once. They don't
+ * take the tree's latch at all if they can avoid it: they read the latch's
+ * version before descending the tree, and check that it hasn't changed (i.e.
+ * that no writer has come and gone) after every node they read. If it has,
+ * the lookup starts over, and after a few failed attempts it takes the latch
+ * for reading instead. A read-mostly workload thus doesn't contend on the
+ * latch.
+ *
+ * Lookups read the nodes on their path from the tree's node cache (see
+ * BPlusNodeCache). A node that isn't cached is binary searched in its page
+ * instead, but only a lookup holding the latch decodes and caches it: a
+ * lookup without the latch might read the page half written, and caching
+ * that would outlast the validation that catches it. Writers, scans, and
+ * locked lookups (see BPlusNode.find) warm the cache.
+ *
+ * Modifications (put, bulkLoad, and remove) hold the latch for writing while
+ * they change any node or the root, since a split can change every node on
+ * the path from the root. Scans (scanAll and scanGreaterEqual) hold it for
+ * reading while they read a leaf, and not at all in between leaves; see
+ * BPlusTreeIterator.
  */
 public class BPlusTree implements Closeable {
     public static final String FILENAME_PREFIX = "db";
@@ -60,9 +82,18 @@ public class BPlusTree implements Closeable {
     private PageAllocator allocator;
     private BPlusTreeMetadata metadata;
     private Page headerPage;
-    private BPlusNode root;
+    private volatile BPlusNode root;
     private LockContext lockContext;
 
+    // The number of times a lookup is attempted without taking the latch
+    // before it takes the latch for reading.
+    private static final int MAX_OPTIMISTIC_ATTEMPTS = 4;
+
+    // Validated (or, failing that, held for reading) by lookups, held for
+    // reading by scans, and held for writing by modifications; see the class
+    // comment.
+    private final StampedLock latch = new StampedLock();
+
     // Constructors ////////////////////////////////////////////////////////////
     /**
      * Construct a new B+ tree which is serialized into the file `filename`,
@@ -165,10 +196,42 @@ public class BPlusTree implements Closeable {
      *   // Get the value we put and also try to get a value we never put.
      *   tree.get(key);                 // Optional.of(rid)
      *   tree.get(new IntDataBox(100)); // Optional.empty()
+     *
+     * The key is looked up directly in the pages of the nodes on its path;
+     * see BPlusNode.find.
      */
     public Optional<RecordId> get(BaseTransaction transaction, DataBox key) {
         typecheck(key);
-        return Optional.empty();
+        for (int i = 0; i < MAX_OPTIMISTIC_ATTEMPTS; ++i) {
+            long stamp = latch.tryOptimisticRead();
+            if (stamp == 0) {
+                // A writer holds the latch.
+                break;
+            }
+            Optional<RecordId> rid;
+            try {
+                rid = findOptimistically(transaction, key, stamp);
+            } catch (RuntimeException e) {
+                // A writer changing the pages we read can make them look
+                // corrupt. The exception is only real if no writer did; if one
+                // did, a page that really is corrupt is still reported, by the
+                // next attempt or by the locked lookup below.
+                if (latch.validate(stamp)) {
+                    throw e;
+                }
+                continue;
+            }
+            if (latch.validate(stamp)) {
+                return rid;
+            }
+        }
+
+        long stamp = latch.readLock();
+        try {
+            return BPlusNode.find(transaction, metadata, root.getPage().getPageNum(), key);
+        } finally {
+            latch.unlockRead(stamp);
+        }
     }
 
     /**
@@ -216,7 +279,13 @@ public class BPlusTree implements Closeable {
      * memory will receive 0 points.
      */
     public Iterator<RecordId> scanAll(BaseTransaction transaction) {
-        return Collections.<RecordId>emptyIterator();
+        long stamp = latch.readLock();
+        try {
+            LeafNode leaf = root.getLeftmostLeaf(transaction);
+            return new BPlusTreeIterator(transaction, leaf, leaf.scanAll());
+        } finally {
+            latch.unlockRead(stamp);
+        }
     }
 
     /**
@@ -245,7 +314,13 @@ public class BPlusTree implements Closeable {
      */
     public Iterator<RecordId> scanGreaterEqual(BaseTransaction transaction, DataBox key) {
         typecheck(key);
-        return Collections.<RecordId>emptyIterator();
+        long stamp = latch.readLock();
+        try {
+            LeafNode leaf = root.get(transaction, key);
+            return new BPlusTreeIterator(transaction, leaf, leaf.scanGreaterEqual(key));
+        } finally {
+            latch.unlockRead(stamp);
+        }
     }
 
     /**
@@ -260,7 +335,15 @@ public class BPlusTree implements Closeable {
      */
     public void put(BaseTransaction transaction, DataBox key, RecordId rid) throws BPlusTreeException {
         typecheck(key);
-        return;
+        long stamp = latch.writeLock();
+        try {
+            Optional<Pair<DataBox, Integer>> split = root.put(transaction, key, rid);
+            if (split.isPresent()) {
+                splitRoot(transaction, split.get());
+            }
+        } finally {
+            latch.unlockWrite(stamp);
+        }
     }
 
     /**
@@ -280,7 +363,20 @@ public class BPlusTree implements Closeable {
      */
     public void bulkLoad(BaseTransaction transaction, Iterator<Pair<DataBox, RecordId>> data,
                          float fillFactor) throws BPlusTreeException {
-        return;
+        long stamp = latch.writeLock();
+        try {
+            if (!isEmpty(transaction)) {
+                throw new BPlusTreeException("You cannot bulk load a non-empty B+ tree.");
+            }
+            while (data.hasNext()) {
+                Optional<Pair<DataBox, Integer>> split = root.bulkLoad(transaction, data, fillFactor);
+                if (split.isPresent()) {
+                    splitRoot(transaction, split.get());
+                }
+            }
+        } finally {
+            latch.unlockWrite(stamp);
+        }
     }
 
     /**
@@ -297,7 +393,12 @@ public class BPlusTree implements Closeable {
      */
     public void remove(BaseTransaction transaction, DataBox key) {
         typecheck(key);
-        return;
+        long stamp = latch.writeLock();
+        try {
+            root.remove(transaction, key);
+        } finally {
+            latch.unlockWrite(stamp);
+        }
     }
 
     // Helpers /////////////////////////////////////////////////////////////////
@@ -374,6 +475,66 @@ public class BPlusTree implements Closeable {
         return metadata.getAllocator().getNumPages();
     }
 
+    /**
+     * Same as BPlusNode.find from the root, but without holding the latch:
+     * the version `stamp` of the latch is validated before every node is
+     * read, and the search is abandoned as soon as it no longer is. Nodes that
+     * aren't cached are searched in their pages but not cached; see the class
+     * comment. The result is only meaningful if the caller validates `stamp`
+     * once more afterwards.
+     */
+    private Optional<RecordId> findOptimistically(BaseTransaction transaction, DataBox key,
+            long stamp) {
+        int pageNum = root.getPage().getPageNum();
+        while (latch.validate(stamp)) {
+            BPlusNode node = metadata.getNodeCache().get(pageNum);
+            if (node instanceof LeafNode) {
+                return ((LeafNode) node).getKey(key);
+            }
+            if (node instanceof InnerNode) {
+                pageNum = ((InnerNode) node).findChild(key);
+                continue;
+            }
+            Page page = metadata.getAllocator().fetchPage(transaction, pageNum);
+            Buffer buf = page.getBuffer(transaction);
+            if (buf.get() == (byte) 1) {
+                return LeafNode.find(metadata, buf, key);
+            }
+            pageNum = InnerNode.findChild(metadata, buf, key);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Replaces the root, which just split into itself and the node on page
+     * `split.getSecond()`, with a new inner node over the two, separated by
+     * `split.getFirst()`. Must be called with the latch held for writing.
+     */
+    private void splitRoot(BaseTransaction transaction, Pair<DataBox, Integer> split) {
+        List<DataBox> keys = new ArrayList<>();
+        keys.add(split.getFirst());
+        List<Integer> children = new ArrayList<>();
+        children.add(root.getPage().getPageNum());
+        children.add(split.getSecond());
+        root = new InnerNode(metadata, keys, children, transaction);
+        writeHeader(transaction, headerPage);
+    }
+
+    /**
+     * Returns whether no leaf of the tree has any entries. Must be called with
+     * the latch held.
+     */
+    private boolean isEmpty(BaseTransaction transaction) {
+        Optional<LeafNode> leaf = Optional.of(root.getLeftmostLeaf(transaction));
+        while (leaf.isPresent()) {
+            if (leaf.get().scanAll().hasNext()) {
+                return false;
+            }
+            leaf = leaf.get().getRightSibling(transaction);
+        }
+        return true;
+    }
+
     /** Serializes the header page to page. */
     private void writeHeader(BaseTransaction transaction, Page page) {
         byte[] keySchema = metadata.getKeySchema().toBytes();
@@ -392,15 +553,61 @@ public class BPlusTree implements Closeable {
     }
 
     // Iterator ////////////////////////////////////////////////////////////////
+    /**
+     * Iterates over the record ids of a leaf and then of every leaf to its
+     * right. The record ids of one leaf at a time are copied while the latch
+     * is held for reading, along with the page number of its right sibling,
+     * so the iterator never holds the latch between calls. Leaves are never
+     * merged or freed, and a split only moves entries to a new leaf between a
+     * leaf and its old right sibling, so a modification made during a scan
+     * can't make it return a record id twice.
+     */
     private class BPlusTreeIterator implements Iterator<RecordId> {
+        private BaseTransaction transaction;
+
+        // The remaining record ids of the current leaf, and the page number of
+        // its right sibling, if it had one when they were copied.
+        private Iterator<RecordId> rids;
+        private Optional<Integer> nextLeaf;
+
+        /**
+         * Returns an iterator over `rids`, which are record ids of `leaf`, and
+         * then over the leaves to its right. Must be called with the latch held.
+         */
+        BPlusTreeIterator(BaseTransaction transaction, LeafNode leaf, Iterator<RecordId> rids) {
+            this.transaction = transaction;
+            advance(leaf, rids);
+        }
+
         @Override
         public boolean hasNext() {
-            return false;
+            while (!rids.hasNext() && nextLeaf.isPresent()) {
+                long stamp = latch.readLock();
+                try {
+                    LeafNode leaf = LeafNode.fromBytes(transaction, metadata, nextLeaf.get());
+                    advance(leaf, leaf.scanAll());
+                } finally {
+                    latch.unlockRead(stamp);
+                }
+            }
+            return rids.hasNext();
         }
 
         @Override
         public RecordId next() {
-            throw new NoSuchElementException();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return rids.next();
+        }
+
+        private void advance(LeafNode leaf, Iterator<RecordId> leafRids) {
+            List<RecordId> copy = new ArrayList<>();
+            while (leafRids.hasNext()) {
+                copy.add(leafRids.next());
+            }
+            this.rids = copy.iterator();
+            this.nextLeaf = leaf.getRightSiblingPageNum();
         }
     }
 }
@@ -13,6 +13,10 @@ class BPlusTreeMetadata {
     // keys.
     private final Type keySchema;
 
+    // How keys of type keySchema are compared in their serialized form; see
+    // KeyFormat.
+    private final KeyFormat keyFormat;
+
     // The order of the tree. Given a tree of order d, its inner nodes store
     // between d and 2d keys and between d+1 and 2d+1 children pointers. Leaf
     // nodes store between d and 2d (key, record id) pairs. Notable exceptions
@@ -20,10 +24,20 @@ class BPlusTreeMetadata {
     // may contain fewer than d entries.
     private final int order;
 
+    // The decoded nodes of the tree, by page number; see BPlusNodeCache.
+    private final BPlusNodeCache nodeCache;
+
     public BPlusTreeMetadata(PageAllocator allocator, Type keySchema, int order) {
+        this(allocator, keySchema, order, BPlusNodeCache.DEFAULT_CAPACITY);
+    }
+
+    public BPlusTreeMetadata(PageAllocator allocator, Type keySchema, int order,
+                             int nodeCacheCapacity) {
         this.allocator = allocator;
         this.keySchema = keySchema;
+        this.keyFormat = KeyFormat.forType(keySchema);
         this.order = order;
+        this.nodeCache = new BPlusNodeCache(nodeCacheCapacity);
     }
 
     public PageAllocator getAllocator() {
@@ -34,7 +48,15 @@ class BPlusTreeMetadata {
         return keySchema;
     }
 
+    KeyFormat getKeyFormat() {
+        return keyFormat;
+    }
+
     public int getOrder() {
         return order;
     }
+
+    BPlusNodeCache getNodeCache() {
+        return nodeCache;
+    }
 }
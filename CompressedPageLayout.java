@@ -0,0 +1,404 @@
+package edu.berkeley.cs186.database.table;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.berkeley.cs186.database.BaseTransaction;
+import edu.berkeley.cs186.database.common.Bits;
+import edu.berkeley.cs186.database.io.Page;
+
+/**
+ * A compressed layout for cold tables, which are mostly scanned and rarely
+ * modified. A compressed data page looks like this:
+ *
+ *   +--------+---------+-------+----------+----------+-----+----------+
+ *   | bitmap | version | count | column 0 | column 1 | ... | column k |
+ *   +--------+---------+-------+----------+----------+-----+----------+
+ *              4 bytes   4 bytes
+ *
+ * where version is incremented every time the page is re-encoded, count is
+ * one more than the highest entry on the page that holds a record, and
+ * column i holds field i of entries 0 through count - 1. Each
+ * column is stored in whichever of the following encodings is smallest:
+ *
+ *   - PLAIN: a 1-byte tag followed by the fixed-width values one after
+ *     another.
+ *   - RUN_LENGTH: a 1-byte tag, the 4-byte number of runs, and then each run
+ *     as a 2-byte length followed by a value.
+ *   - DICTIONARY: a 1-byte tag, the 2-byte number of distinct values d, the
+ *     distinct values, and then for each entry the index of its value in the
+ *     distinct values (1 byte if d <= 256, 2 bytes otherwise).
+ *
+ * Empty entries take the value of the entry before them so that they don't
+ * break up runs or add to dictionaries.
+ *
+ * Decoding a page yields the page's records in the fixed-width RecordFormat,
+ * one after another. Each table's layout caches its most recently used
+ * decoded pages, keyed by page number and tagged with the version of the page
+ * they were decoded from. A page whose version hasn't changed since it was
+ * last decoded is not decoded again, no matter which scan asks, and checking
+ * takes reading just the version.
+ *
+ * Writing a record re-encodes the entire page, so a compressed table is best
+ * built in one go with Table.addRecords or converted from an existing table
+ * with Table.copy.
+ */
+class CompressedPageLayout extends PageLayout {
+    private static final byte PLAIN = 0;
+    private static final byte RUN_LENGTH = 1;
+    private static final byte DICTIONARY = 2;
+
+    // We fit at most this many times as many records on a page as the
+    // fixed-width layout does, which bounds the size of a decoded page.
+    private static final int MAX_COMPRESSION_RATIO = 8;
+
+    // The number of decoded pages cached per table.
+    private static final int CACHE_CAPACITY = 256;
+
+    private static class DecodedPage {
+        // The version of the page when it was decoded, and the decoded records.
+        int version;
+        byte[] records;
+
+        DecodedPage(int version, byte[] records) {
+            this.version = version;
+            this.records = records;
+        }
+    }
+
+    // The decoded pages of our table, by page number, least recently used
+    // first. Guarded by itself.
+    private final Map<Integer, DecodedPage> decodedPages =
+        new LinkedHashMap<Integer, DecodedPage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, DecodedPage> eldest) {
+                return size() > CACHE_CAPACITY;
+            }
+        };
+
+    private int recordSize;
+    private int versionOffset;
+    private int countOffset;
+
+    CompressedPageLayout(Schema schema, int pageSize) {
+        super(schema, pageSize, RecordFormat.fixed(schema));
+        this.recordSize = schema.getSizeInBytes();
+
+        // Every record takes at least 1 bit for the bitmap and, if every
+        // column compresses perfectly, a byte of dictionary index per field.
+        int numFields = Math.max(1, schema.getFieldTypes().size());
+        int recordOverheadInBits = 1 + 8 * numFields;
+        int unrounded = Math.min((pageSize - 2 * Integer.BYTES) * 8 / recordOverheadInBits,
+                                 MAX_COMPRESSION_RATIO * Table.computeNumRecordsPerPage(pageSize, schema));
+        this.numRecordsPerPage = unrounded / 8 * 8;
+        this.bitmapSizeInBytes = numRecordsPerPage / 8;
+        this.versionOffset = bitmapSizeInBytes;
+        this.countOffset = versionOffset + Integer.BYTES;
+    }
+
+    @Override
+    Table.PageFormat getFormat() {
+        return Table.PageFormat.COMPRESSED;
+    }
+
+    @Override
+    byte[] decodePage(Page page, byte[] bytes) {
+        int version = ByteBuffer.wrap(bytes).getInt(versionOffset);
+        byte[] records = getCached(page.getPageNum(), version);
+        if (records == null) {
+            records = decode(bytes);
+            cache(page.getPageNum(), version, records);
+        }
+        return records;
+    }
+
+    @Override
+    int getRecordOffset(byte[] page, int entryNum) {
+        return entryNum * recordSize;
+    }
+
+    @Override
+    byte[] getRecordBytes(BaseTransaction transaction, Page page, int entryNum) {
+        int version = page.getBuffer(transaction).position(versionOffset).getInt();
+        byte[] records = getCached(page.getPageNum(), version);
+        if (records == null) {
+            records = decodePage(page, readPage(transaction, page));
+        }
+        return Arrays.copyOfRange(records, entryNum * recordSize, (entryNum + 1) * recordSize);
+    }
+
+    @Override
+    boolean putRecord(BaseTransaction transaction, Page page, int entryNum, byte[] bytes) {
+        return putRecords(transaction, page, new int[] {entryNum}, new byte[][] {bytes}, 1) == 1;
+    }
+
+    /**
+     * Encodes the page once for the whole batch. If not every record fits, we
+     * binary search for the largest prefix of them that does. The records we
+     * encode are cached as the decoded page of the page's new version.
+     */
+    @Override
+    int putRecords(BaseTransaction transaction, Page page, int[] entryNums, byte[][] records,
+                   int n) {
+        byte[] image = readPage(transaction, page);
+        byte[] decoded = decodePage(page, image);
+        boolean[] live = getLiveEntries(image);
+        int version = ByteBuffer.wrap(image).getInt(versionOffset);
+
+        int lo = 0;
+        int hi = n;
+        byte[] written = withRecords(decoded, live, entryNums, records, n);
+        byte[] encoded = encode(written);
+        if (encoded != null) {
+            lo = n;
+        } else {
+            hi = n - 1;
+        }
+        while (lo < hi) {
+            // Try to fit the first mid records.
+            int mid = (lo + hi + 1) / 2;
+            byte[] attempt = withRecords(decoded, live, entryNums, records, mid);
+            byte[] attemptEncoded = encode(attempt);
+            if (attemptEncoded != null) {
+                lo = mid;
+                written = attempt;
+                encoded = attemptEncoded;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (encoded != null) {
+            page.getBuffer(transaction).position(versionOffset).putInt(version + 1).put(encoded);
+            cache(page.getPageNum(), version + 1, written);
+        }
+        return lo;
+    }
+
+    @Override
+    void removeRecord(BaseTransaction transaction, Page page, int entryNum) {
+        // The record's value stays in the encoded columns until the page is
+        // next re-encoded, at which point the entry is treated as empty.
+    }
+
+    @Override
+    void forgetPage(int pageNum) {
+        synchronized (decodedPages) {
+            decodedPages.remove(pageNum);
+        }
+    }
+
+    // Helpers ///////////////////////////////////////////////////////////////////
+    /**
+     * Returns the cached records of page `pageNum`, or null if they aren't
+     * cached or were decoded from a version of the page other than `version`.
+     */
+    private byte[] getCached(int pageNum, int version) {
+        synchronized (decodedPages) {
+            DecodedPage decoded = decodedPages.get(pageNum);
+            return decoded != null && decoded.version == version ? decoded.records : null;
+        }
+    }
+
+    private void cache(int pageNum, int version, byte[] records) {
+        synchronized (decodedPages) {
+            decodedPages.put(pageNum, new DecodedPage(version, records));
+        }
+    }
+
+    private byte[] readPage(BaseTransaction transaction, Page page) {
+        byte[] bytes = new byte[pageSize];
+        page.getBuffer(transaction).get(bytes);
+        return bytes;
+    }
+
+    private boolean[] getLiveEntries(byte[] image) {
+        boolean[] live = new boolean[numRecordsPerPage];
+        for (int i = 0; i < numRecordsPerPage; ++i) {
+            live[i] = Bits.getBit(image, i) == Bits.Bit.ONE;
+        }
+        return live;
+    }
+
+    /**
+     * Returns a copy of the decoded records `decoded` in which entries
+     * entryNums[0..n) hold records[0..n). Entries that are not live (and
+     * aren't one of entryNums[0..n)) take the value of the entry before them,
+     * and the result stops after the last entry that holds a record.
+     */
+    private byte[] withRecords(byte[] decoded, boolean[] live, int[] entryNums,
+                               byte[][] records, int n) {
+        boolean[] holdsRecord = live.clone();
+        int count = 0;
+        for (int i = 0; i < numRecordsPerPage; ++i) {
+            if (holdsRecord[i]) {
+                count = i + 1;
+            }
+        }
+        for (int i = 0; i < n; ++i) {
+            holdsRecord[entryNums[i]] = true;
+            count = Math.max(count, entryNums[i] + 1);
+        }
+
+        byte[] result = Arrays.copyOf(decoded, count * recordSize);
+        for (int i = 0; i < n; ++i) {
+            System.arraycopy(records[i], 0, result, entryNums[i] * recordSize, recordSize);
+        }
+        for (int i = 0; i < count; ++i) {
+            if (!holdsRecord[i]) {
+                if (i == 0) {
+                    Arrays.fill(result, 0, recordSize, (byte) 0);
+                } else {
+                    System.arraycopy(result, (i - 1) * recordSize, result, i * recordSize, recordSize);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Encodes `records`, returning everything that follows the version on the
+     * page, or null if the encoding doesn't fit on a page.
+     */
+    private byte[] encode(byte[] records) {
+        int count = records.length / recordSize;
+        List<byte[]> columns = new ArrayList<>();
+        int size = Integer.BYTES;
+        for (int field = 0; field < schema.getFieldTypes().size(); ++field) {
+            byte[] column = encodeColumn(records, count, field);
+            columns.add(column);
+            size += column.length;
+        }
+        if (countOffset + size > pageSize) {
+            return null;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(count);
+        for (byte[] column : columns) {
+            buf.put(column);
+        }
+        return buf.array();
+    }
+
+    private byte[] encodeColumn(byte[] records, int count, int field) {
+        int offset = schema.getFieldOffset(field);
+        int width = schema.getFieldTypes().get(field).getSizeInBytes();
+
+        // Count the runs and the distinct values.
+        int numRuns = 0;
+        Map<ByteBuffer, Integer> dictionary = new HashMap<>();
+        List<Integer> dictionaryEntries = new ArrayList<>();
+        int runLength = 0;
+        for (int i = 0; i < count; ++i) {
+            int start = i * recordSize + offset;
+            if (i == 0 || runLength == 0xFFFF || !sameValue(records, start - recordSize, start, width)) {
+                numRuns++;
+                runLength = 0;
+            }
+            runLength++;
+            ByteBuffer value = ByteBuffer.wrap(records, start, width);
+            if (!dictionary.containsKey(value)) {
+                dictionary.put(value, dictionary.size());
+                dictionaryEntries.add(i);
+            }
+        }
+
+        int plainSize = count * width;
+        int runLengthSize = Integer.BYTES + numRuns * (Short.BYTES + width);
+        int d = dictionary.size();
+        int codeSize = d <= 256 ? 1 : Short.BYTES;
+        int dictionarySize = d <= 0xFFFF ? Short.BYTES + d * width + count * codeSize : Integer.MAX_VALUE;
+        int best = Math.min(plainSize, Math.min(runLengthSize, dictionarySize));
+
+        ByteBuffer buf = ByteBuffer.allocate(1 + best);
+        if (best == plainSize) {
+            buf.put(PLAIN);
+            for (int i = 0; i < count; ++i) {
+                buf.put(records, i * recordSize + offset, width);
+            }
+        } else if (best == runLengthSize) {
+            buf.put(RUN_LENGTH);
+            buf.putInt(numRuns);
+            int i = 0;
+            while (i < count) {
+                int start = i * recordSize + offset;
+                int j = i + 1;
+                while (j < count && j - i < 0xFFFF &&
+                        sameValue(records, start, j * recordSize + offset, width)) {
+                    j++;
+                }
+                buf.putShort((short) (j - i));
+                buf.put(records, start, width);
+                i = j;
+            }
+        } else {
+            buf.put(DICTIONARY);
+            buf.putShort((short) d);
+            for (int i : dictionaryEntries) {
+                buf.put(records, i * recordSize + offset, width);
+            }
+            for (int i = 0; i < count; ++i) {
+                int code = dictionary.get(ByteBuffer.wrap(records, i * recordSize + offset, width));
+                if (codeSize == 1) {
+                    buf.put((byte) code);
+                } else {
+                    buf.putShort((short) code);
+                }
+            }
+        }
+        return buf.array();
+    }
+
+    private byte[] decode(byte[] page) {
+        ByteBuffer buf = ByteBuffer.wrap(page);
+        buf.position(countOffset);
+        int count = buf.getInt();
+        byte[] records = new byte[count * recordSize];
+        for (int field = 0; field < schema.getFieldTypes().size(); ++field) {
+            int offset = schema.getFieldOffset(field);
+            int width = schema.getFieldTypes().get(field).getSizeInBytes();
+            byte encoding = buf.get();
+            if (encoding == PLAIN) {
+                for (int i = 0; i < count; ++i) {
+                    buf.get(records, i * recordSize + offset, width);
+                }
+            } else if (encoding == RUN_LENGTH) {
+                int numRuns = buf.getInt();
+                int i = 0;
+                for (int r = 0; r < numRuns; ++r) {
+                    int length = buf.getShort() & 0xFFFF;
+                    int valueStart = buf.position();
+                    for (int k = 0; k < length; ++k, ++i) {
+                        System.arraycopy(page, valueStart, records, i * recordSize + offset, width);
+                    }
+                    buf.position(valueStart + width);
+                }
+            } else {
+                assert(encoding == DICTIONARY);
+                int d = buf.getShort() & 0xFFFF;
+                int valuesStart = buf.position();
+                buf.position(valuesStart + d * width);
+                for (int i = 0; i < count; ++i) {
+                    int code = d <= 256 ? buf.get() & 0xFF : buf.getShort() & 0xFFFF;
+                    System.arraycopy(page, valuesStart + code * width,
+                                     records, i * recordSize + offset, width);
+                }
+            }
+        }
+        return records;
+    }
+
+    private static boolean sameValue(byte[] bytes, int a, int b, int width) {
+        for (int k = 0; k < width; ++k) {
+            if (bytes[a + k] != bytes[b + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
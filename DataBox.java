@@ -83,4 +83,41 @@ public abstract class DataBox implements Comparable<DataBox> {
         }
         }
     }
+
+    /**
+     * Same as fromBytes(buf, type), but decodes the DataBox serialized in
+     * `bytes` starting at index `offset`.
+     */
+    public static DataBox fromBytes(byte[] bytes, int offset, Type type) {
+        switch (type.getTypeId()) {
+        case BOOL: {
+            byte b = bytes[offset];
+            assert (b == 0 || b == 1);
+            return new BoolDataBox(b == 1);
+        }
+        case INT: {
+            return new IntDataBox(getInt(bytes, offset));
+        }
+        case FLOAT: {
+            return new FloatDataBox(Float.intBitsToFloat(getInt(bytes, offset)));
+        }
+        case STRING: {
+            String s = new String(bytes, offset, type.getSizeInBytes(), Charset.forName("UTF-8"));
+            return new StringDataBox(s, type.getSizeInBytes());
+        }
+        default: {
+            String err = String.format("Unhandled TypeId %s.",
+                                       type.getTypeId().toString());
+            throw new IllegalArgumentException(err);
+        }
+        }
+    }
+
+    // Reads a 4-byte big-endian integer (the format ByteBuffer::putInt writes).
+    static int getInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) |
+               ((bytes[offset + 1] & 0xFF) << 16) |
+               ((bytes[offset + 2] & 0xFF) << 8) |
+               (bytes[offset + 3] & 0xFF);
+    }
 }
@@ -0,0 +1,50 @@
+package edu.berkeley.cs186.database.table;
+
+import edu.berkeley.cs186.database.BaseTransaction;
+import edu.berkeley.cs186.database.common.Buffer;
+import edu.berkeley.cs186.database.io.Page;
+
+/**
+ * The original layout of a data page, described in detail in Table: an n-byte
+ * bitmap followed by m fixed-width records, where n and m are chosen to
+ * maximize the number of records per page.
+ */
+class FixedPageLayout extends PageLayout {
+    FixedPageLayout(Schema schema, int pageSize) {
+        super(schema, pageSize, RecordFormat.fixed(schema));
+        this.numRecordsPerPage = Table.computeNumRecordsPerPage(pageSize, schema);
+        this.bitmapSizeInBytes = Table.computeBitmapSizeInBytes(pageSize, schema);
+    }
+
+    @Override
+    Table.PageFormat getFormat() {
+        return Table.PageFormat.FIXED_WIDTH;
+    }
+
+    @Override
+    int getRecordOffset(byte[] page, int entryNum) {
+        return bitmapSizeInBytes + entryNum * schema.getSizeInBytes();
+    }
+
+    @Override
+    byte[] getRecordBytes(BaseTransaction transaction, Page page, int entryNum) {
+        byte[] bytes = new byte[schema.getSizeInBytes()];
+        Buffer buf = page.getBuffer(transaction);
+        buf.position(getRecordOffset(null, entryNum));
+        buf.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    boolean putRecord(BaseTransaction transaction, Page page, int entryNum, byte[] bytes) {
+        Buffer buf = page.getBuffer(transaction);
+        buf.position(getRecordOffset(null, entryNum));
+        buf.put(bytes);
+        return true;
+    }
+
+    @Override
+    void removeRecord(BaseTransaction transaction, Page page, int entryNum) {
+        // Every entry has its own space, so there's nothing to release.
+    }
+}
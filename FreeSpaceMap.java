@@ -0,0 +1,317 @@
+package edu.berkeley.cs186.database.table;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import edu.berkeley.cs186.database.BaseTransaction;
+import edu.berkeley.cs186.database.common.Bits;
+import edu.berkeley.cs186.database.common.Buffer;
+import edu.berkeley.cs186.database.concurrency.LockContext;
+import edu.berkeley.cs186.database.io.Page;
+import edu.berkeley.cs186.database.io.PageAllocator;
+import edu.berkeley.cs186.database.table.stats.Bucket;
+import edu.berkeley.cs186.database.table.stats.Histogram;
+import edu.berkeley.cs186.database.table.stats.TableStats;
+
+/**
+ * # Overview
+ * A FreeSpaceMap records which data pages of a table have room for more
+ * records, along with the number of records in the table and a small
+ * statistics section describing the table's histograms. It is persisted in
+ * its own file next to the table's file (e.g. "t.table.fsm" for "t.table") so
+ * that loading a table does not require reading every one of its data pages.
+ *
+ * # Storage Format
+ *   1. The first page of the file is a header page. It contains a 4-byte
+ *      version number followed by the 8-byte number of records in the table
+ *      and then the statistics section: a 4-byte statistics version, the
+ *      4-byte number of histogram buckets the table's statistics were last
+ *      built with (0 if they never were), the 8-byte number of
+ *      modifications made to the table since then, the 4-byte number of data
+ *      pages in the table, and the 4-byte number of histograms, one per
+ *      column, followed by the histograms themselves. Each histogram is a
+ *      4-byte number of buckets followed by, for each bucket, its 4-byte
+ *      float start and end and its 4-byte count and distinct count. If the
+ *      histograms don't fit on the header page, their number is written as
+ *      -1 and none are written.
+ *   2. All remaining pages are bitmap pages. Bit i of bitmap page k (counting
+ *      from 1) is set if and only if data page (k - 1) * BITS_PER_PAGE + i of
+ *      the table has at least one free slot.
+ *
+ * Bitmap pages are allocated lazily, so a table with n data pages only ever
+ * needs about n / BITS_PER_PAGE of them.
+ *
+ * A table modifies its free space map from many threads at once (see Table).
+ * The modifiers of the header page are synchronized, but they are rarely
+ * called: the table keeps its counts in memory and only saves them when its
+ * statistics are built or it is closed. setFree, which is called whenever a
+ * page fills up or gains room, only locks the byte of the bitmap it changes.
+ */
+class FreeSpaceMap implements Closeable {
+    public static final String FILENAME_EXTENSION = ".fsm";
+
+    // The version of the storage format described above.
+    private static final int VERSION = 1;
+
+    // The version of the statistics section of the header page. Maps with a
+    // different statistics version are treated as having no statistics.
+    private static final int STATS_VERSION = 2;
+
+    // The offset of the statistics section within the header page.
+    private static final int STATS_OFFSET = Integer.BYTES + Long.BYTES;
+
+    // The offset of the number of data pages within the header page.
+    private static final int NUM_PAGES_OFFSET = STATS_OFFSET + 2 * Integer.BYTES + Long.BYTES;
+
+    // The size of a serialized histogram bucket.
+    private static final int BUCKET_SIZE = 2 * Float.BYTES + 2 * Integer.BYTES;
+
+    // The number of data pages tracked by a single bitmap page.
+    private static final int BITS_PER_PAGE = Page.pageSize * 8;
+
+    // The number of locks that the bytes of the bitmap pages are striped
+    // across; see setFree.
+    private static final int NUM_BITMAP_LOCKS = 64;
+
+    // The allocator used to persist the free space map.
+    private PageAllocator allocator;
+
+    // bitmapLocks[i] guards every byte b of the bitmap pages with b % NUM_BITMAP_LOCKS
+    // == i, counting bytes across all bitmap pages.
+    private final Object[] bitmapLocks = new Object[NUM_BITMAP_LOCKS];
+
+    // Constructors //////////////////////////////////////////////////////////////
+    /**
+     * Open the free space map of the table persisted in `tableFilename`. If
+     * `wipe` is true, or if the table has never had a free space map, an empty
+     * map is created; use isNew to tell the two cases apart from a map that
+     * was loaded from disk.
+     */
+    FreeSpaceMap(LockContext lockContext, String tableFilename, boolean wipe,
+                 BaseTransaction transaction) {
+        String filename = tableFilename + FILENAME_EXTENSION;
+        this.allocator = new PageAllocator(lockContext, filename, wipe, transaction);
+        if (allocator.getNumPages() == 0) {
+            Page headerPage = allocator.fetchPage(transaction, allocator.allocPage(transaction));
+            assert(0 == headerPage.getPageNum());
+            headerPage.getBuffer(transaction).putInt(-1).putLong(0);
+        }
+        for (int i = 0; i < NUM_BITMAP_LOCKS; ++i) {
+            bitmapLocks[i] = new Object();
+        }
+    }
+
+    // Accessors /////////////////////////////////////////////////////////////////
+    /**
+     * Returns true if this map has not been populated, i.e. it was just
+     * created, or markUnpopulated was called on it, and markPopulated has not
+     * been called on it since.
+     */
+    boolean isNew(BaseTransaction transaction) {
+        return getHeaderBuffer(transaction).getInt() != VERSION;
+    }
+
+    long getNumRecords(BaseTransaction transaction) {
+        Buffer buf = getHeaderBuffer(transaction);
+        buf.getInt();
+        return buf.getLong();
+    }
+
+    /**
+     * Returns the number of histogram buckets the table's statistics were last
+     * built with, or 0 if they were never built.
+     */
+    int getHistogramBuckets(BaseTransaction transaction) {
+        Buffer buf = getStatsBuffer(transaction);
+        if (buf.getInt() != STATS_VERSION) {
+            return 0;
+        }
+        return buf.getInt();
+    }
+
+    /**
+     * Returns the number of records added, updated, or deleted since the
+     * table's statistics were last built.
+     */
+    long getNumModifications(BaseTransaction transaction) {
+        Buffer buf = getStatsBuffer(transaction);
+        if (buf.getInt() != STATS_VERSION) {
+            return 0;
+        }
+        buf.getInt();
+        return buf.getLong();
+    }
+
+    /**
+     * Returns the statistics of a table with schema `schema` and `numRecords`
+     * records, as they were last saved by setStatistics and kept up to date
+     * by setNumDataPages, or null if this map has none, e.g. because it was
+     * written with a different statistics version.
+     */
+    TableStats getStatistics(BaseTransaction transaction, Schema schema, long numRecords) {
+        Buffer buf = getStatsBuffer(transaction);
+        if (buf.getInt() != STATS_VERSION) {
+            return null;
+        }
+        buf.position(NUM_PAGES_OFFSET);
+        int numPages = buf.getInt();
+        int numHistograms = buf.getInt();
+        if (numHistograms != schema.getFieldTypes().size()) {
+            return null;
+        }
+        List<Histogram> histograms = new ArrayList<>();
+        for (int i = 0; i < numHistograms; ++i) {
+            @SuppressWarnings("unchecked")
+            Bucket<Float>[] buckets = new Bucket[buf.getInt()];
+            for (int j = 0; j < buckets.length; ++j) {
+                buckets[j] = new Bucket<>(buf.getFloat(), buf.getFloat());
+                buckets[j].setCount(buf.getInt());
+                buckets[j].setDistinctCount(buf.getInt());
+            }
+            histograms.add(new Histogram(buckets));
+        }
+        return new TableStats(schema, numRecords, numPages, histograms);
+    }
+
+    /**
+     * Returns the page numbers of all data pages that are marked as having
+     * free space.
+     */
+    TreeSet<Integer> getFreePageNums(BaseTransaction transaction) {
+        TreeSet<Integer> freePageNums = new TreeSet<>();
+        byte[] bitmap = new byte[Page.pageSize];
+        long[] words = PageBitmap.newWords(bitmap.length);
+        for (int k = 1; k < allocator.getNumPages(); ++k) {
+            allocator.fetchPage(transaction, k).getBuffer(transaction).get(bitmap);
+            PageBitmap.toWords(bitmap, bitmap.length, words);
+            for (int i = PageBitmap.nextSetBit(words, 0); i != -1;
+                    i = PageBitmap.nextSetBit(words, i + 1)) {
+                freePageNums.add((k - 1) * BITS_PER_PAGE + i);
+            }
+        }
+        return freePageNums;
+    }
+
+    // Modifiers /////////////////////////////////////////////////////////////////
+    /**
+     * Marks this map as populated. Until this is called, isNew returns true
+     * and a reloaded table rebuilds the map from its data pages.
+     */
+    synchronized void markPopulated(BaseTransaction transaction) {
+        getHeaderBuffer(transaction).putInt(VERSION);
+    }
+
+    /**
+     * Marks this map as no longer populated, e.g. because the counts saved in
+     * it are about to fall behind those of the table.
+     */
+    synchronized void markUnpopulated(BaseTransaction transaction) {
+        getHeaderBuffer(transaction).putInt(-1);
+    }
+
+    synchronized void setNumRecords(BaseTransaction transaction, long numRecords) {
+        Buffer buf = getHeaderBuffer(transaction);
+        buf.position(Integer.BYTES);
+        buf.putLong(numRecords);
+    }
+
+    /**
+     * Saves `stats`, the statistics of a table with `numPages` data pages,
+     * which were just built with `buckets` histogram buckets (0 if their
+     * histograms were never built).
+     */
+    synchronized void setStatistics(BaseTransaction transaction, int buckets, int numPages,
+                                    TableStats stats) {
+        List<Histogram> histograms = stats.getHistograms();
+        int size = NUM_PAGES_OFFSET + 2 * Integer.BYTES;
+        for (Histogram histogram : histograms) {
+            size += Integer.BYTES + histogram.getAllBuckets().length * BUCKET_SIZE;
+        }
+
+        Buffer buf = getStatsBuffer(transaction);
+        buf.putInt(STATS_VERSION).putInt(buckets).putLong(0).putInt(numPages);
+        if (size > Page.pageSize) {
+            buf.putInt(-1);
+            return;
+        }
+        buf.putInt(histograms.size());
+        for (Histogram histogram : histograms) {
+            Bucket<Float>[] histogramBuckets = histogram.getAllBuckets();
+            buf.putInt(histogramBuckets.length);
+            for (Bucket<Float> bucket : histogramBuckets) {
+                buf.putFloat(bucket.getStart()).putFloat(bucket.getEnd());
+                buf.putInt(bucket.getCount()).putInt(bucket.getDistinctCount());
+            }
+        }
+    }
+
+    /**
+     * Records that the table now has `numPages` data pages, if its statistics
+     * have been saved.
+     */
+    synchronized void setNumDataPages(BaseTransaction transaction, int numPages) {
+        Buffer buf = getStatsBuffer(transaction);
+        if (buf.getInt() != STATS_VERSION) {
+            return;
+        }
+        buf.position(NUM_PAGES_OFFSET);
+        buf.putInt(numPages);
+    }
+
+    /**
+     * Records that the table has been modified `numModifications` times since
+     * its statistics were last built.
+     */
+    synchronized void setNumModifications(BaseTransaction transaction, long numModifications) {
+        Buffer buf = getStatsBuffer(transaction);
+        if (buf.getInt() != STATS_VERSION) {
+            return;
+        }
+        buf.getInt();
+        buf.putLong(numModifications);
+    }
+
+    /**
+     * Marks data page `pageNum` as having free space (or not). Only the byte
+     * of the bitmap holding the page's bit is locked, so pages whose bits are
+     * in different bytes can be marked concurrently.
+     */
+    void setFree(BaseTransaction transaction, int pageNum, boolean free) {
+        int k = 1 + pageNum / BITS_PER_PAGE;
+        if (k >= allocator.getNumPages()) {
+            if (!free) {
+                // Pages without a bitmap page are implicitly full.
+                return;
+            }
+            allocateBitmapPages(transaction, k);
+        }
+        synchronized (bitmapLocks[(pageNum / 8) % NUM_BITMAP_LOCKS]) {
+            Buffer buf = allocator.fetchPage(transaction, k).getBuffer(transaction);
+            Bits.setBit(buf, pageNum % BITS_PER_PAGE, free ? Bits.Bit.ONE : Bits.Bit.ZERO);
+        }
+    }
+
+    public void close() {
+        allocator.close();
+    }
+
+    // Helpers ///////////////////////////////////////////////////////////////////
+    /** Allocates bitmap pages until bitmap page `k` exists. */
+    private synchronized void allocateBitmapPages(BaseTransaction transaction, int k) {
+        while (k >= allocator.getNumPages()) {
+            allocator.allocPage(transaction);
+        }
+    }
+
+    private Buffer getHeaderBuffer(BaseTransaction transaction) {
+        return allocator.fetchPage(transaction, 0).getBuffer(transaction);
+    }
+
+    private Buffer getStatsBuffer(BaseTransaction transaction) {
+        Buffer buf = getHeaderBuffer(transaction);
+        buf.position(STATS_OFFSET);
+        return buf;
+    }
+}
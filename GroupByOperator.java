@@ -85,7 +85,7 @@ public class GroupByOperator extends QueryOperator {
             this.rIter = null;
             while (this.sourceIterator.hasNext()) {
                 Record record = this.sourceIterator.next();
-                DataBox groupByColumn = record.getValues().get(GroupByOperator.this.groupByColumnIndex);
+                DataBox groupByColumn = record.getValue(GroupByOperator.this.groupByColumnIndex);
                 String tableName;
                 if (!this.hashGroupTempTables.containsKey(groupByColumn.toString())) {
                     tableName = "Temp" + GroupByOperator.this.groupByColumn + "GroupBy" +
@@ -162,7 +162,7 @@ public class IndexScanOperator extends QueryOperator {
                 while (this.sourceIterator.hasNext()) {
                     Record r = this.sourceIterator.next();
 
-                    if (r.getValues().get(IndexScanOperator.this.columnIndex)
+                    if (r.getValue(IndexScanOperator.this.columnIndex)
                             .compareTo(IndexScanOperator.this.value) > 0) {
                         this.nextRecord = r;
                         break;
@@ -188,7 +188,7 @@ public class IndexScanOperator extends QueryOperator {
             if (IndexScanOperator.this.predicate == QueryPlan.PredicateOperator.LESS_THAN) {
                 if (this.sourceIterator.hasNext()) {
                     Record r = this.sourceIterator.next();
-                    if (r.getValues().get(IndexScanOperator.this.columnIndex)
+                    if (r.getValue(IndexScanOperator.this.columnIndex)
                             .compareTo(IndexScanOperator.this.value) >= 0) {
                         return false;
                     }
@@ -199,7 +199,7 @@ public class IndexScanOperator extends QueryOperator {
             } else if (IndexScanOperator.this.predicate == QueryPlan.PredicateOperator.LESS_THAN_EQUALS) {
                 if (this.sourceIterator.hasNext()) {
                     Record r = this.sourceIterator.next();
-                    if (r.getValues().get(IndexScanOperator.this.columnIndex)
+                    if (r.getValue(IndexScanOperator.this.columnIndex)
                             .compareTo(IndexScanOperator.this.value) > 0) {
                         return false;
                     }
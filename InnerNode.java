@@ -68,20 +68,27 @@ class InnerNode extends BPlusNode {
     // See BPlusNode.get.
     @Override
     public LeafNode get(BaseTransaction transaction, DataBox key) {
-        return null;
+        return getChild(transaction, numLessThanEqual(key, keys)).get(transaction, key);
     }
 
     // See BPlusNode.getLeftmostLeaf.
     @Override
     public LeafNode getLeftmostLeaf(BaseTransaction transaction) {
-        return null;
+        return getChild(transaction, 0).getLeftmostLeaf(transaction);
     }
 
     // See BPlusNode.put.
     @Override
     public Optional<Pair<DataBox, Integer>> put(BaseTransaction transaction, DataBox key, RecordId rid)
     throws BPlusTreeException {
-        return Optional.empty();
+        int index = numLessThanEqual(key, keys);
+        Optional<Pair<DataBox, Integer>> split = getChild(transaction, index).put(transaction, key, rid);
+        if (!split.isPresent()) {
+            return Optional.empty();
+        }
+        keys.add(index, split.get().getFirst());
+        children.add(index + 1, split.get().getSecond());
+        return splitIfOverflowing(transaction);
     }
 
     // See BPlusNode.bulkLoad.
@@ -90,13 +97,21 @@ class InnerNode extends BPlusNode {
             Iterator<Pair<DataBox, RecordId>> data,
             float fillFactor)
     throws BPlusTreeException {
-        return Optional.empty();
+        while (data.hasNext() && keys.size() <= 2 * metadata.getOrder()) {
+            BPlusNode child = getChild(transaction, children.size() - 1);
+            Optional<Pair<DataBox, Integer>> split = child.bulkLoad(transaction, data, fillFactor);
+            if (split.isPresent()) {
+                keys.add(split.get().getFirst());
+                children.add(split.get().getSecond());
+            }
+        }
+        return splitIfOverflowing(transaction);
     }
 
     // See BPlusNode.remove.
     @Override
     public void remove(BaseTransaction transaction, DataBox key) {
-        return;
+        getChild(transaction, numLessThanEqual(key, keys)).remove(transaction, key);
     }
 
     // Helpers ///////////////////////////////////////////////////////////////////
@@ -110,6 +125,30 @@ class InnerNode extends BPlusNode {
         return BPlusNode.fromBytes(transaction, metadata, pageNum);
     }
 
+    /**
+     * Syncs this node and returns Optional.empty() if it has at most 2d keys.
+     * Otherwise, it has 2d + 1 keys: the first d (and their children) are
+     * kept, the last d are moved to a new right sibling, and the middle key is
+     * returned along with the sibling's page number. See BPlusNode.put.
+     */
+    private Optional<Pair<DataBox, Integer>> splitIfOverflowing(BaseTransaction transaction) {
+        int d = metadata.getOrder();
+        if (keys.size() <= 2 * d) {
+            sync(transaction);
+            return Optional.empty();
+        }
+
+        DataBox splitKey = keys.get(d);
+        List<DataBox> rightKeys = new ArrayList<>(keys.subList(d + 1, keys.size()));
+        List<Integer> rightChildren = new ArrayList<>(children.subList(d + 1, children.size()));
+        InnerNode right = new InnerNode(metadata, rightKeys, rightChildren, transaction);
+
+        keys = new ArrayList<>(keys.subList(0, d));
+        children = new ArrayList<>(children.subList(0, d + 1));
+        sync(transaction);
+        return Optional.of(new Pair<>(splitKey, right.getPage().getPageNum()));
+    }
+
     private void sync(BaseTransaction transaction) {
         Buffer b = page.getBuffer(transaction);
         byte[] newBytes = toBytes();
@@ -117,9 +156,36 @@ class InnerNode extends BPlusNode {
         b.get(bytes);
         if (!Arrays.equals(bytes, newBytes)) {
             page.getBuffer(transaction).put(toBytes());
+            metadata.getNodeCache().invalidate(page.getPageNum());
         }
     }
 
+    /**
+     * Returns the page number of the child on which `key` may reside. Same as
+     * findChild(metadata, buf, key), but binary searches the keys of this
+     * node rather than those serialized on its page.
+     */
+    int findChild(DataBox key) {
+        int i = Collections.binarySearch(keys, key);
+        return children.get(i >= 0 ? i + 1 : -i - 1);
+    }
+
+    /**
+     * Given `buf`, the buffer of a page holding a serialized inner node (see
+     * toBytes), returns the page number of the child on which `key` may
+     * reside, without deserializing the node.
+     */
+    static int findChild(BPlusTreeMetadata metadata, Buffer buf, DataBox key) {
+        // The keys begin after isLeaf and n, and the children after the keys.
+        int keysOffset = 1 + Integer.BYTES;
+        int keySize = metadata.getKeySchema().getSizeInBytes();
+        buf.position(1);
+        int n = buf.getInt();
+        int i = metadata.getKeyFormat().numLessThanEqual(buf, keysOffset, keySize, n, key);
+        buf.position(keysOffset + n * keySize + i * Integer.BYTES);
+        return buf.getInt();
+    }
+
     // Just for testing.
     List<DataBox> getKeys() {
         return keys;
@@ -314,14 +380,20 @@ class InnerNode extends BPlusNode {
 
     /**
      * InnerNode.fromBytes(t, meta, p) loads a InnerNode from page p of
-     * meta.getAllocator().
+     * meta.getAllocator(), or returns the node cached for page p, if there is
+     * one.
      */
     public static InnerNode fromBytes(BaseTransaction transaction, BPlusTreeMetadata metadata,
                                       int pageNum) {
+        BPlusNode cached = metadata.getNodeCache().get(pageNum);
+        if (cached instanceof InnerNode) {
+            return (InnerNode) cached;
+        }
         Page page = metadata.getAllocator().fetchPage(transaction, pageNum);
         Buffer buf = page.getBuffer(transaction);
 
-        assert(buf.get() == (byte) 0);
+        byte isLeaf = buf.get();
+        assert(isLeaf == (byte) 0);
 
         List<DataBox> keys = new ArrayList<>();
         List<Integer> children = new ArrayList<>();
@@ -332,7 +404,9 @@ class InnerNode extends BPlusNode {
         for (int i = 0; i < n + 1; ++i) {
             children.add(buf.getInt());
         }
-        return new InnerNode(metadata, pageNum, keys, children, transaction);
+        InnerNode node = new InnerNode(metadata, pageNum, keys, children, transaction);
+        metadata.getNodeCache().put(pageNum, node);
+        return node;
     }
 
     // Builtins //////////////////////////////////////////////////////////////////
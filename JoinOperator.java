@@ -10,6 +10,7 @@ import edu.berkeley.cs186.database.common.BacktrackingIterator;
 import edu.berkeley.cs186.database.databox.DataBox;
 import edu.berkeley.cs186.database.databox.Type;
 import edu.berkeley.cs186.database.io.Page;
+import edu.berkeley.cs186.database.table.PrefetchingPageIterator;
 import edu.berkeley.cs186.database.table.Record;
 import edu.berkeley.cs186.database.table.RecordId;
 import edu.berkeley.cs186.database.table.RecordIterator;
@@ -34,6 +35,10 @@ public abstract class JoinOperator extends QueryOperator {
     private String rightColumnName;
     private Database.Transaction transaction;
 
+    // The number of pages that page iterators returned by getPageIterator read ahead; see
+    // PrefetchingPageIterator.
+    private int prefetchWindow;
+
     /**
      * Create a join operator that pulls tuples from leftSource and rightSource. Returns tuples for which
      * leftColumnName and rightColumnName are equal.
@@ -58,6 +63,7 @@ public abstract class JoinOperator extends QueryOperator {
         this.rightColumnName = rightColumnName;
         this.setOutputSchema(this.computeSchema());
         this.transaction = transaction;
+        this.prefetchWindow = PrefetchingPageIterator.DEFAULT_WINDOW;
     }
 
     public abstract Iterator<Record> iterator() throws QueryPlanException, DatabaseException;
@@ -84,6 +90,20 @@ public abstract class JoinOperator extends QueryOperator {
         this.rightSource = rightSource;
     }
 
+    public int getPrefetchWindow() {
+        return this.prefetchWindow;
+    }
+
+    /**
+     * Sets the number of pages that the page iterators of this join read ahead of the page being
+     * joined, or 0 to read pages only when they are needed.
+     *
+     * @param prefetchWindow the number of pages to read ahead
+     */
+    public void setPrefetchWindow(int prefetchWindow) {
+        this.prefetchWindow = prefetchWindow;
+    }
+
     public Schema computeSchema() throws QueryPlanException {
         Schema leftSchema = this.leftSource.getOutputSchema();
         Schema rightSchema = this.rightSource.getOutputSchema();
@@ -146,8 +166,22 @@ public abstract class JoinOperator extends QueryOperator {
         return this.transaction.getSchema(tableName);
     }
 
+    /**
+     * Returns an iterator over the pages of the table, which reads up to getPrefetchWindow() pages
+     * ahead on a background thread.
+     */
     public Iterator<Page> getPageIterator(String tableName) throws DatabaseException {
-        return this.transaction.getPageIterator(tableName);
+        return this.getPageIterator(tableName, this.prefetchWindow);
+    }
+
+    /**
+     * Returns an iterator over the pages of the table, which reads up to prefetchWindow pages
+     * ahead on a background thread, or reads pages only when they are needed if prefetchWindow
+     * is 0.
+     */
+    public Iterator<Page> getPageIterator(String tableName,
+                                          int prefetchWindow) throws DatabaseException {
+        return this.transaction.getPageIterator(tableName, prefetchWindow);
     }
 
     public byte[] getPageHeader(String tableName, Page p) throws DatabaseException {
@@ -239,7 +273,7 @@ public abstract class JoinOperator extends QueryOperator {
         private String rightTableName;
 
         public JoinIterator() throws QueryPlanException, DatabaseException {
-            if (JoinOperator.this.getLeftSource().isSequentialScan()) {
+            if (this.isTableScan(JoinOperator.this.getLeftSource())) {
                 this.leftTableName = ((SequentialScanOperator) JoinOperator.this.getLeftSource()).getTableName();
             } else {
                 this.leftTableName = JoinOperator.this.createTempTable(
@@ -249,7 +283,7 @@ public abstract class JoinOperator extends QueryOperator {
                     JoinOperator.this.addRecord(this.leftTableName, leftIter.next().getValues());
                 }
             }
-            if (JoinOperator.this.getRightSource().isSequentialScan()) {
+            if (this.isTableScan(JoinOperator.this.getRightSource())) {
                 this.rightTableName = ((SequentialScanOperator) JoinOperator.this.getRightSource()).getTableName();
             } else {
                 this.rightTableName = JoinOperator.this.createTempTable(
@@ -261,6 +295,18 @@ public abstract class JoinOperator extends QueryOperator {
             }
         }
 
+        /**
+         * Returns true if source outputs exactly the records of its table, so we can read the
+         * table directly instead of copying source into a temporary table.
+         */
+        private boolean isTableScan(QueryOperator source) {
+            if (!source.isSequentialScan()) {
+                return false;
+            }
+            SequentialScanOperator scan = (SequentialScanOperator) source;
+            return !scan.isProjected() && !scan.hasPredicates();
+        }
+
         protected String getLeftTableName() {
             return this.leftTableName;
         }
@@ -0,0 +1,118 @@
+package edu.berkeley.cs186.database.index;
+
+import edu.berkeley.cs186.database.common.Buffer;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.Type;
+
+/**
+ * A KeyFormat compares the keys of a B+ tree in their serialized form, as
+ * they are stored in the pages of the tree's nodes (see InnerNode.toBytes and
+ * LeafNode.toBytes). Every key of a tree has the same type, and so the same
+ * size, so the keys of a node form an array of fixed-width entries that can
+ * be searched without deserializing any of them.
+ *
+ * Every tree has a KeyFormat, picked from its key schema by
+ * KeyFormat.forType. Trees with INT and FLOAT keys, which are by far the most
+ * common, get a format that reads keys as primitive ints and floats and
+ * compares them directly. Every other type of key is decoded into a DataBox
+ * and compared with DataBox.compareTo.
+ */
+abstract class KeyFormat {
+    protected Type keySchema;
+
+    protected KeyFormat(Type keySchema) {
+        this.keySchema = keySchema;
+    }
+
+    static KeyFormat forType(Type keySchema) {
+        switch (keySchema.getTypeId()) {
+        case INT:
+            return new IntKeyFormat(keySchema);
+        case FLOAT:
+            return new FloatKeyFormat(keySchema);
+        default:
+            return new GenericKeyFormat(keySchema);
+        }
+    }
+
+    Type getKeySchema() {
+        return keySchema;
+    }
+
+    /**
+     * Consider the `n` keys stored in `buf` at offsets offset, offset +
+     * stride, offset + 2 * stride, ..., sorted in ascending order.
+     * numLessThanEqual returns the number of them that are less than or equal
+     * to `key`; see InnerNode.numLessThanEqual. Only about log2(n) of the keys
+     * are read. The position of `buf` is left unspecified.
+     */
+    int numLessThanEqual(Buffer buf, int offset, int stride, int n, DataBox key) {
+        return search(buf, offset, stride, n, key, true);
+    }
+
+    /** Same as numLessThanEqual but for < instead of <=. */
+    int numLessThan(Buffer buf, int offset, int stride, int n, DataBox key) {
+        return search(buf, offset, stride, n, key, false);
+    }
+
+    /**
+     * Returns the number of keys, in the sense of numLessThanEqual, that are
+     * less than `key` or, if `inclusive` is true, equal to it.
+     */
+    private int search(Buffer buf, int offset, int stride, int n, DataBox key,
+                       boolean inclusive) {
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            buf.position(offset + mid * stride);
+            int cmp = compare(buf, key);
+            if (cmp < 0 || (inclusive && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Reads the key at the position of `buf` and compares it to `key`,
+     * returning a negative number, zero, or a positive number if the key read
+     * is less than, equal to, or greater than `key`.
+     */
+    abstract int compare(Buffer buf, DataBox key);
+
+    private static class IntKeyFormat extends KeyFormat {
+        IntKeyFormat(Type keySchema) {
+            super(keySchema);
+        }
+
+        @Override
+        int compare(Buffer buf, DataBox key) {
+            return Integer.compare(buf.getInt(), key.getInt());
+        }
+    }
+
+    private static class FloatKeyFormat extends KeyFormat {
+        FloatKeyFormat(Type keySchema) {
+            super(keySchema);
+        }
+
+        @Override
+        int compare(Buffer buf, DataBox key) {
+            return Float.compare(buf.getFloat(), key.getFloat());
+        }
+    }
+
+    private static class GenericKeyFormat extends KeyFormat {
+        GenericKeyFormat(Type keySchema) {
+            super(keySchema);
+        }
+
+        @Override
+        int compare(Buffer buf, DataBox key) {
+            return DataBox.fromBytes(buf, keySchema).compareTo(key);
+        }
+    }
+}
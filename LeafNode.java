@@ -130,20 +130,36 @@ class LeafNode extends BPlusNode {
     // See BPlusNode.get.
     @Override
     public LeafNode get(BaseTransaction transaction, DataBox key) {
-        return null;
+        return this;
     }
 
     // See BPlusNode.getLeftmostLeaf.
     @Override
     public LeafNode getLeftmostLeaf(BaseTransaction transaction) {
-        return null;
+        return this;
     }
 
     // See BPlusNode.put.
     @Override
     public Optional<Pair<DataBox, Integer>> put(BaseTransaction transaction, DataBox key, RecordId rid)
     throws BPlusTreeException {
-        return Optional.empty();
+        int index = InnerNode.numLessThan(key, keys);
+        if (index < keys.size() && keys.get(index).equals(key)) {
+            String msg = String.format("The key %s is already in the B+ tree.", key);
+            throw new BPlusTreeException(msg);
+        }
+        keys.add(index, key);
+        rids.add(index, rid);
+
+        int d = metadata.getOrder();
+        if (keys.size() <= 2 * d) {
+            sync(transaction);
+            return Optional.empty();
+        }
+
+        // Keep the first d entries and move the remaining d + 1 to a new right
+        // sibling.
+        return Optional.of(split(transaction, d));
     }
 
     // See BPlusNode.bulkLoad.
@@ -152,20 +168,39 @@ class LeafNode extends BPlusNode {
             Iterator<Pair<DataBox, RecordId>> data,
             float fillFactor)
     throws BPlusTreeException {
-        return Optional.empty();
+        int maxSize = (int) Math.ceil(2 * metadata.getOrder() * fillFactor);
+        while (data.hasNext() && keys.size() <= maxSize) {
+            Pair<DataBox, RecordId> entry = data.next();
+            keys.add(entry.getFirst());
+            rids.add(entry.getSecond());
+        }
+        if (keys.size() <= maxSize) {
+            sync(transaction);
+            return Optional.empty();
+        }
+
+        // We are one entry over the fill factor, so move that entry to a new
+        // right sibling.
+        return Optional.of(split(transaction, maxSize));
     }
 
     // See BPlusNode.remove.
     @Override
     public void remove(BaseTransaction transaction, DataBox key) {
-        return;
+        int index = keys.indexOf(key);
+        if (index == -1) {
+            return;
+        }
+        keys.remove(index);
+        rids.remove(index);
+        sync(transaction);
     }
 
     // Iterators /////////////////////////////////////////////////////////////////
     /** Return the record id associated with `key`. */
     public Optional<RecordId> getKey(DataBox key) {
-        int index = keys.indexOf(key);
-        return index == -1 ? Optional.empty() : Optional.of(rids.get(index));
+        int index = Collections.binarySearch(keys, key);
+        return index < 0 ? Optional.empty() : Optional.of(rids.get(index));
     }
 
     /**
@@ -202,6 +237,56 @@ class LeafNode extends BPlusNode {
         return Optional.of(LeafNode.fromBytes(transaction, metadata, pageNum));
     }
 
+    /**
+     * Returns the page number of the right sibling of this leaf, if it has
+     * one, without reading the sibling.
+     */
+    Optional<Integer> getRightSiblingPageNum() {
+        return rightSibling;
+    }
+
+    /**
+     * Given `buf`, the buffer of a page holding a serialized leaf (see
+     * toBytes), returns the record id of `key`, or Optional.empty() if the
+     * leaf doesn't contain it, without deserializing the leaf.
+     */
+    static Optional<RecordId> find(BPlusTreeMetadata metadata, Buffer buf, DataBox key) {
+        // The entries begin after isLeaf, the sibling pointer, and n.
+        int entriesOffset = 1 + Integer.BYTES + Integer.BYTES;
+        int keySize = metadata.getKeySchema().getSizeInBytes();
+        int entrySize = keySize + RecordId.getSizeInBytes();
+        KeyFormat keyFormat = metadata.getKeyFormat();
+        buf.position(1 + Integer.BYTES);
+        int n = buf.getInt();
+        int i = keyFormat.numLessThan(buf, entriesOffset, entrySize, n, key);
+        if (i == n) {
+            return Optional.empty();
+        }
+        buf.position(entriesOffset + i * entrySize);
+        if (keyFormat.compare(buf, key) != 0) {
+            return Optional.empty();
+        }
+        return Optional.of(RecordId.fromBytes(buf));
+    }
+
+    /**
+     * Moves every entry of this leaf from index `n` on to a new right sibling,
+     * syncs both leaves, and returns the first key of the new sibling along
+     * with the sibling's page number.
+     */
+    private Pair<DataBox, Integer> split(BaseTransaction transaction, int n) {
+        List<DataBox> rightKeys = new ArrayList<>(keys.subList(n, keys.size()));
+        List<RecordId> rightRids = new ArrayList<>(rids.subList(n, rids.size()));
+        LeafNode right = new LeafNode(metadata, rightKeys, rightRids, rightSibling, transaction);
+        int rightPageNum = right.getPage().getPageNum();
+
+        keys = new ArrayList<>(keys.subList(0, n));
+        rids = new ArrayList<>(rids.subList(0, n));
+        rightSibling = Optional.of(rightPageNum);
+        sync(transaction);
+        return new Pair<>(rightKeys.get(0), rightPageNum);
+    }
+
     /** Serializes this leaf to its page. */
     private void sync(BaseTransaction transaction) {
         Buffer b = page.getBuffer(transaction);
@@ -210,6 +295,7 @@ class LeafNode extends BPlusNode {
         b.get(bytes);
         if (!Arrays.equals(bytes, newBytes)) {
             page.getBuffer(transaction).put(toBytes());
+            metadata.getNodeCache().invalidate(page.getPageNum());
         }
     }
 
@@ -337,11 +423,34 @@ class LeafNode extends BPlusNode {
 
     /**
      * LeafNode.fromBytes(m, p) loads a LeafNode from page p of
-     * meta.getAllocator().
+     * meta.getAllocator(), or returns the node cached for page p, if there is
+     * one.
      */
     public static LeafNode fromBytes(BaseTransaction transaction, BPlusTreeMetadata metadata,
                                      int pageNum) {
-        return new LeafNode(metadata, Collections.emptyList(), Collections.emptyList(), Optional.empty(), transaction);
+        BPlusNode cached = metadata.getNodeCache().get(pageNum);
+        if (cached instanceof LeafNode) {
+            return (LeafNode) cached;
+        }
+        Page page = metadata.getAllocator().fetchPage(transaction, pageNum);
+        Buffer buf = page.getBuffer(transaction);
+
+        // See toBytes for the format read here.
+        byte isLeaf = buf.get();
+        assert(isLeaf == (byte) 1);
+
+        int sibling = buf.getInt();
+        Optional<Integer> rightSibling = sibling == -1 ? Optional.empty() : Optional.of(sibling);
+        List<DataBox> keys = new ArrayList<>();
+        List<RecordId> rids = new ArrayList<>();
+        int n = buf.getInt();
+        for (int i = 0; i < n; ++i) {
+            keys.add(DataBox.fromBytes(buf, metadata.getKeySchema()));
+            rids.add(RecordId.fromBytes(buf));
+        }
+        LeafNode node = new LeafNode(metadata, pageNum, keys, rids, rightSibling, transaction);
+        metadata.getNodeCache().put(pageNum, node);
+        return node;
     }
 
     // Builtins //////////////////////////////////////////////////////////////////
@@ -144,8 +144,8 @@ public class PNLJOperator extends JoinOperator {
             this.nextRecord = null;
             do {
                 if (rightRecord != null ) {
-                    DataBox leftJoinValue = this.leftRecord.getValues().get( PNLJOperator.this.getLeftColumnIndex() );
-                    DataBox rightJoinValue = rightRecord.getValues().get( PNLJOperator.this.getRightColumnIndex() );
+                    DataBox leftJoinValue = this.leftRecord.getValue( PNLJOperator.this.getLeftColumnIndex() );
+                    DataBox rightJoinValue = rightRecord.getValue( PNLJOperator.this.getRightColumnIndex() );
                     if ( leftJoinValue.equals(rightJoinValue)) {
                         List<DataBox> leftValues = new ArrayList<>( this.leftRecord.getValues() );
                         List<DataBox> rightValues = new ArrayList<>( rightRecord.getValues() );
@@ -0,0 +1,164 @@
+package edu.berkeley.cs186.database.table;
+
+/**
+ * Helpers for scanning the bitmaps found at the beginning of data pages (and
+ * in a FreeSpaceMap) a 64-bit word at a time rather than a bit at a time.
+ *
+ * Bitmaps are stored the way Bits writes them: bit i of a bitmap is the
+ * (i % 8)th most significant bit of byte i / 8. toWords repacks such a bitmap
+ * into longs where bit i of the bitmap is bit (i % 64) (counting from the
+ * least significant bit) of word i / 64, which lets us use
+ * Long.numberOfTrailingZeros and Long.bitCount to find and count set bits.
+ *
+ * Callers that convert a bitmap per page should allocate their words once and
+ * refill them with toWords(bytes, numBytes, words). Callers that only look at
+ * a bitmap once can use the byte[] versions of nextSetBit and cardinality,
+ * which read the bitmap as stored, a byte at a time, and allocate nothing.
+ */
+final class PageBitmap {
+    private PageBitmap() {}
+
+    /** Repacks `bitmap` into words; see the comment above. */
+    static long[] toWords(byte[] bitmap) {
+        return toWords(bitmap, bitmap.length);
+    }
+
+    /** Repacks the bitmap stored in the first `numBytes` bytes of `bytes`. */
+    static long[] toWords(byte[] bytes, int numBytes) {
+        long[] words = newWords(numBytes);
+        toWords(bytes, numBytes, words);
+        return words;
+    }
+
+    /** Returns (zeroed) words for a bitmap of `numBytes` bytes. */
+    static long[] newWords(int numBytes) {
+        return new long[(numBytes + Long.BYTES - 1) / Long.BYTES];
+    }
+
+    /**
+     * Same as toWords(bitmap), but writes the words into `words`, which must
+     * have been returned by toWords for a bitmap of the same length.
+     */
+    static void toWords(byte[] bitmap, long[] words) {
+        toWords(bitmap, bitmap.length, words);
+    }
+
+    /**
+     * Same as toWords(bytes, numBytes), but writes the words into `words`,
+     * which must have been returned by newWords(numBytes).
+     */
+    static void toWords(byte[] bytes, int numBytes, long[] words) {
+        for (int w = 0; w < words.length; ++w) {
+            // Read (up to) eight bytes big-endian. Reversing the result moves
+            // the most significant bit of the first byte (bit 8w of the bitmap)
+            // to bit 0, the next bit to bit 1, and so on.
+            long word = 0;
+            int start = w * Long.BYTES;
+            for (int i = 0; i < Long.BYTES; ++i) {
+                word <<= 8;
+                if (start + i < numBytes) {
+                    word |= bytes[start + i] & 0xFF;
+                }
+            }
+            words[w] = Long.reverse(word);
+        }
+    }
+
+    /** The inverse of toWords: writes `words` back into `bitmap`. */
+    static void fromWords(long[] words, byte[] bitmap) {
+        for (int w = 0; w < words.length; ++w) {
+            long word = Long.reverse(words[w]);
+            int start = w * Long.BYTES;
+            for (int i = 0; i < Long.BYTES && start + i < bitmap.length; ++i) {
+                bitmap[start + i] = (byte) (word >>> (8 * (Long.BYTES - 1 - i)));
+            }
+        }
+    }
+
+    static void setBit(long[] words, int i) {
+        words[i >>> 6] |= 1L << i;
+    }
+
+    /**
+     * Returns the index of the first set bit at or after `from`, or -1 if
+     * there is none.
+     */
+    static int nextSetBit(long[] words, int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return w * Long.SIZE + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    /**
+     * Returns the index of the first unset bit at or after `from` and before
+     * `limit`, or -1 if there is none.
+     */
+    static int nextClearBit(long[] words, int from, int limit) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = ~words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int i = w * Long.SIZE + Long.numberOfTrailingZeros(word);
+                return i < limit ? i : -1;
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = ~words[w];
+        }
+    }
+
+    /** Returns the number of set bits. */
+    static int cardinality(long[] words) {
+        int n = 0;
+        for (long word : words) {
+            n += Long.bitCount(word);
+        }
+        return n;
+    }
+
+    /**
+     * Same as nextSetBit(toWords(bitmap), from), without converting `bitmap`.
+     */
+    static int nextSetBit(byte[] bitmap, int from) {
+        int b = from >>> 3;
+        if (b >= bitmap.length) {
+            return -1;
+        }
+        // Bit i of a byte is its (i % 8)th most significant bit, so the first
+        // set bit is the one with the most leading zeros before it.
+        int bits = bitmap[b] & (0xFF >>> (from & 7));
+        while (true) {
+            if (bits != 0) {
+                return b * Byte.SIZE + Integer.numberOfLeadingZeros(bits) - 24;
+            }
+            if (++b == bitmap.length) {
+                return -1;
+            }
+            bits = bitmap[b] & 0xFF;
+        }
+    }
+
+    /** Same as cardinality(toWords(bitmap)), without converting `bitmap`. */
+    static int cardinality(byte[] bitmap) {
+        int n = 0;
+        for (byte b : bitmap) {
+            n += Integer.bitCount(b & 0xFF);
+        }
+        return n;
+    }
+}
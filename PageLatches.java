@@ -0,0 +1,69 @@
+package edu.berkeley.cs186.database.table;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * PageLatches protects the data pages of a table from concurrent access. A
+ * page is read with its read latch held and modified with its write latch
+ * held:
+ *
+ *   Lock latch = latches.writeLatch(pageNum);
+ *   latch.lock();
+ *   try {
+ *       // Modify page pageNum.
+ *   } finally {
+ *       latch.unlock();
+ *   }
+ *
+ * Rather than one latch per page, there is a fixed number of latches, and
+ * the pages are striped across them: page p shares a latch with page p + n,
+ * p + 2n, ..., where n is the number of stripes. There are several stripes
+ * per core, so threads working on different pages rarely wait for each
+ * other. The latches are reentrant, and a thread holding a write latch may
+ * also take the corresponding read latch.
+ *
+ * Every stripe also has an insert lock, which inserters (see
+ * Table.latchFreePage) take before the write latch of the page they insert
+ * into. Only inserters and compaction take insert locks, so an inserter can
+ * tell whether another inserter has claimed a stripe (by trying its insert
+ * lock) without being misled by threads that only read or update the stripe's
+ * pages.
+ *
+ * Since two pages may share a latch, a thread never holds the latches of
+ * two different pages at once, or it could deadlock with a thread latching
+ * the same two stripes in the opposite order. The one exception is
+ * compaction (see Table.moveRecord), which only one thread runs at a time.
+ * A thread that holds both an insert lock and a write latch acquired the
+ * insert lock first.
+ */
+class PageLatches {
+    private ReentrantReadWriteLock[] latches;
+    private ReentrantLock[] insertLocks;
+
+    PageLatches() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    PageLatches(int numStripes) {
+        this.latches = new ReentrantReadWriteLock[numStripes];
+        this.insertLocks = new ReentrantLock[numStripes];
+        for (int i = 0; i < numStripes; ++i) {
+            latches[i] = new ReentrantReadWriteLock();
+            insertLocks[i] = new ReentrantLock();
+        }
+    }
+
+    Lock readLatch(int pageNum) {
+        return latches[pageNum % latches.length].readLock();
+    }
+
+    Lock writeLatch(int pageNum) {
+        return latches[pageNum % latches.length].writeLock();
+    }
+
+    Lock insertLock(int pageNum) {
+        return insertLocks[pageNum % insertLocks.length];
+    }
+}
@@ -0,0 +1,134 @@
+package edu.berkeley.cs186.database.table;
+
+import edu.berkeley.cs186.database.BaseTransaction;
+import edu.berkeley.cs186.database.io.Page;
+
+/**
+ * A PageLayout describes how records are arranged inside of the data pages of
+ * a table; every table has one, chosen by the Table.PageFormat it was created
+ * with. Whatever the layout, a data page always begins with a bitmap of
+ * getNumRecordsPerPage() bits indicating which entries of the page hold a
+ * record, so the record ids of a page can be iterated without knowing how the
+ * page is laid out. Everything after the bitmap is up to the layout.
+ *
+ * A PageLayout never touches the bitmap itself; that is left to the Table.
+ */
+abstract class PageLayout {
+    protected Schema schema;
+    protected int pageSize;
+    protected RecordFormat recordFormat;
+    protected int numRecordsPerPage;
+    protected int bitmapSizeInBytes;
+
+    protected PageLayout(Schema schema, int pageSize, RecordFormat recordFormat) {
+        this.schema = schema;
+        this.pageSize = pageSize;
+        this.recordFormat = recordFormat;
+    }
+
+    /**
+     * Returns the layout of format `format` for the pages of a table whose
+     * records are of `schema`. Every table has its own layout, so layouts that
+     * cache the contents of pages cache only the pages of their table.
+     */
+    static PageLayout create(Table.PageFormat format, Schema schema, int pageSize) {
+        switch (format) {
+        case FIXED_WIDTH:
+            return new FixedPageLayout(schema, pageSize);
+        case SLOTTED:
+            return new SlottedPageLayout(schema, pageSize);
+        case COMPRESSED:
+            return new CompressedPageLayout(schema, pageSize);
+        case PAX:
+            return new PaxPageLayout(schema, pageSize);
+        default: {
+            String err = String.format("Unhandled PageFormat %s.", format);
+            throw new IllegalArgumentException(err);
+        }
+        }
+    }
+
+    // Accessors /////////////////////////////////////////////////////////////////
+    abstract Table.PageFormat getFormat();
+
+    RecordFormat getRecordFormat() {
+        return recordFormat;
+    }
+
+    /**
+     * Returns the format of the records found at getRecordOffset in the bytes
+     * returned by decodePage. For most layouts, this is getRecordFormat().
+     */
+    RecordFormat getPageRecordFormat() {
+        return recordFormat;
+    }
+
+    int getNumRecordsPerPage() {
+        return numRecordsPerPage;
+    }
+
+    int getBitmapSizeInBytes() {
+        return bitmapSizeInBytes;
+    }
+
+    /**
+     * Given `bytes`, a copy of the entire data page `page`, returns the bytes
+     * in which the page's records can be found (see getRecordOffset). Most
+     * layouts store their records as they are, in which case this is `bytes`
+     * itself.
+     */
+    byte[] decodePage(Page page, byte[] bytes) {
+        return bytes;
+    }
+
+    /**
+     * Returns the offset of the record in entry `entryNum` of `page`, as
+     * returned by decodePage, in the sense of getPageRecordFormat(). The entry
+     * must hold a record.
+     */
+    abstract int getRecordOffset(byte[] page, int entryNum);
+
+    // Records ///////////////////////////////////////////////////////////////////
+    /**
+     * Returns the bytes (in the format of getRecordFormat()) of the record in
+     * entry `entryNum` of `page`. The entry must hold a record.
+     */
+    abstract byte[] getRecordBytes(BaseTransaction transaction, Page page, int entryNum);
+
+    /**
+     * Writes `bytes` (a record in the format of getRecordFormat()) into entry
+     * `entryNum` of `page`, replacing the record in the entry if there is one.
+     * Returns false, leaving the page untouched, if there isn't room for the
+     * record on the page.
+     */
+    abstract boolean putRecord(BaseTransaction transaction, Page page, int entryNum,
+                               byte[] bytes);
+
+    /**
+     * Same as putRecord for records[i] and entryNums[i] for i = 0, 1, ...,
+     * n - 1, stopping at the first record that doesn't fit. Returns the number
+     * of records written. Layouts for which writing a record is expensive can
+     * write all of them at once.
+     */
+    int putRecords(BaseTransaction transaction, Page page, int[] entryNums, byte[][] records,
+                   int n) {
+        for (int i = 0; i < n; ++i) {
+            if (!putRecord(transaction, page, entryNums[i], records[i])) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Releases the space used by the record in entry `entryNum` of `page`.
+     * Called when the record is deleted.
+     */
+    abstract void removeRecord(BaseTransaction transaction, Page page, int entryNum);
+
+    /**
+     * Forgets anything cached about data page `pageNum`, which has been freed
+     * and may later be allocated again with different contents.
+     */
+    void forgetPage(int pageNum) {}
+}
@@ -0,0 +1,72 @@
+package edu.berkeley.cs186.database.table;
+
+import java.util.Arrays;
+
+/**
+ * A PageOccupancy maps the page numbers of a table's data pages to the number
+ * of records on them, for the pages whose records have been counted. The
+ * counts are kept in primitive int arrays of CHUNK_SIZE pages each, so that
+ * reading or updating the count of a page doesn't box an Integer or allocate
+ * a map entry.
+ *
+ * The count of a page is only read or written with the page latched (see
+ * PageLatches), which orders the accesses to any one count. Chunks are
+ * allocated as pages with higher numbers are counted, and are never moved, so
+ * a count written into a chunk is never lost when another thread allocates a
+ * chunk of its own.
+ */
+final class PageOccupancy {
+    // The number of pages per chunk.
+    private static final int CHUNK_SIZE = 1024;
+
+    // The chunks, indexed by pageNum / CHUNK_SIZE. A chunk that hasn't been
+    // allocated is null. The array is replaced (never modified) whenever a
+    // chunk is allocated, so that readers always see chunks whose counts have
+    // been initialized.
+    private volatile int[][] chunks = new int[0][];
+
+    /** Returns the number of records on page `pageNum`, or -1 if unknown. */
+    int get(int pageNum) {
+        int[] chunk = getChunk(pageNum, false);
+        return chunk == null ? -1 : chunk[pageNum % CHUNK_SIZE];
+    }
+
+    /**
+     * Records that there are `n` records on page `pageNum`, or forgets how
+     * many there are if `n` is -1.
+     */
+    void set(int pageNum, int n) {
+        int[] chunk = getChunk(pageNum, n != -1);
+        if (chunk != null) {
+            chunk[pageNum % CHUNK_SIZE] = n;
+        }
+    }
+
+    /**
+     * Returns the chunk holding the count of page `pageNum`, allocating it if
+     * there is none and `allocate` is true, and returning null otherwise.
+     */
+    private int[] getChunk(int pageNum, boolean allocate) {
+        int c = pageNum / CHUNK_SIZE;
+        int[][] current = chunks;
+        if (c < current.length && current[c] != null) {
+            return current[c];
+        }
+        if (!allocate) {
+            return null;
+        }
+
+        synchronized (this) {
+            current = chunks;
+            if (c < current.length && current[c] != null) {
+                return current[c];
+            }
+            int[][] grown = Arrays.copyOf(current, Math.max(c + 1, current.length));
+            int[] chunk = new int[CHUNK_SIZE];
+            Arrays.fill(chunk, -1);
+            grown[c] = chunk;
+            chunks = grown;
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package edu.berkeley.cs186.database.table;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import edu.berkeley.cs186.database.BaseTransaction;
+import edu.berkeley.cs186.database.io.Page;
+
+/**
+ * A PageScanIterator iterates over every record of a table, given an iterator
+ * over the table's data pages. Tables create them; for example, the following
+ * iterates over every record of the table `t`:
+ *
+ *   Iterator<Record> records = t.iterator(transaction, null, predicates, 0);
+ *
+ * The table's layout tells the iterator how the data pages are laid out (see
+ * Table.PageFormat).
+ *
+ * Unlike a RecordIterator, which calls Table.getRecord once per record, a
+ * PageScanIterator copies each page into a byte array once and returns every
+ * record on the page as a RecordView over that array. Values are only decoded
+ * when an operator asks for them.
+ *
+ * A PageScanIterator can also be given the indices of the fields it should
+ * return, in which case every record it returns has just those fields and the
+ * remaining fields are never decoded. Finally, it can be given a list of
+ * ScanPredicates, in which case it only returns the records that satisfy all
+ * of them. The predicates are evaluated against the bytes of the page, so a
+ * record that doesn't satisfy them never has a RecordView created for it.
+ * Pages that the table's ZoneMap says can't hold a record that satisfies them
+ * aren't read at all.
+ *
+ * Each page is copied with the page latched (see Table.copyPageBytes), so the
+ * scan can run while the table is being modified.
+ */
+public class PageScanIterator implements Iterator<Record> {
+    private Table table;
+    private BaseTransaction transaction;
+    private Iterator<Page> pageIter;
+    private int[] fields;
+    private List<ScanPredicate> predicates;
+    private PageLayout layout;
+    private RecordFormat format;
+    private int bitmapSizeInBytes;
+
+    // The zone map of the table, or null if there are no predicates.
+    private ZoneMap zoneMap;
+
+    // The contents of the current page, or null if we haven't read a page yet,
+    // and its bitmap (see PageBitmap), which is refilled for every page.
+    private byte[] bytes = null;
+    private long[] bitmap;
+
+    // The entry number of the next record on the current page that satisfies
+    // every predicate, or -1 if there are no more such records on the current
+    // page.
+    private int nextEntryNum = -1;
+
+    /**
+     * Iterates over the records on the data pages of `table` returned by
+     * `pageIter` that satisfy every one of `predicates`. The records returned
+     * consist of fields fields[0], fields[1], ... of the table's records, or
+     * all of them if `fields` is null. The predicates refer to the fields of
+     * the table, not to `fields`.
+     */
+    PageScanIterator(Table table, BaseTransaction transaction, Iterator<Page> pageIter,
+                     int[] fields, List<ScanPredicate> predicates) {
+        this.table = table;
+        this.transaction = transaction;
+        this.pageIter = pageIter;
+        this.fields = fields;
+        this.predicates = predicates;
+        this.layout = table.getLayout();
+        this.format = layout.getPageRecordFormat();
+        this.bitmapSizeInBytes = layout.getBitmapSizeInBytes();
+        this.bitmap = PageBitmap.newWords(bitmapSizeInBytes);
+        this.zoneMap = predicates.isEmpty() ? null : table.getZoneMap();
+    }
+
+    public boolean hasNext() {
+        while (nextEntryNum == -1) {
+            if (!pageIter.hasNext()) {
+                return false;
+            }
+            Page page = pageIter.next();
+            if (zoneMap == null || zoneMap.mayMatch(transaction, page.getPageNum(), predicates)) {
+                readPage(page);
+            }
+        }
+        return true;
+    }
+
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int entryNum = nextEntryNum;
+        nextEntryNum = nextMatchingEntryNum(entryNum + 1);
+        return new RecordView(bytes, layout.getRecordOffset(bytes, entryNum), format, fields);
+    }
+
+    private void readPage(Page page) {
+        byte[] pageBytes = table.copyPageBytes(transaction, page);
+        PageBitmap.toWords(pageBytes, bitmapSizeInBytes, bitmap);
+        bytes = layout.decodePage(page, pageBytes);
+        nextEntryNum = nextMatchingEntryNum(0);
+    }
+
+    /**
+     * Returns the first entry number at or after `from` of a record on the
+     * current page that satisfies every predicate, or -1 if there is none.
+     */
+    private int nextMatchingEntryNum(int from) {
+        int entryNum = PageBitmap.nextSetBit(bitmap, from);
+        while (entryNum != -1 && !matches(layout.getRecordOffset(bytes, entryNum))) {
+            entryNum = PageBitmap.nextSetBit(bitmap, entryNum + 1);
+        }
+        return entryNum;
+    }
+
+    private boolean matches(int offset) {
+        for (ScanPredicate predicate : predicates) {
+            if (!predicate.matches(format, bytes, offset)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
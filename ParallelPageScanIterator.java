@@ -0,0 +1,138 @@
+package edu.berkeley.cs186.database.table;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import edu.berkeley.cs186.database.BaseTransaction;
+import edu.berkeley.cs186.database.io.Page;
+
+/**
+ * A ParallelPageScanIterator returns the same records, in the same order, as
+ * a PageScanIterator with the same arguments, but decodes and filters the
+ * table's pages on every core. Tables create them; for example,
+ *
+ *   Iterator<Record> records = t.parallelIterator(transaction, null, predicates);
+ *
+ * The data pages are split into ranges of `rangeSize` consecutive pages. Each
+ * range is scanned by its own task on a shared ForkJoinPool, which reads the
+ * pages, evaluates the predicates, and collects the matching records (see
+ * PageScanIterator). The caller takes the records of the ranges in order from
+ * a queue of at most `maxInFlight` ranges. Once the queue is full, no more
+ * ranges are started until the caller takes the first one, so a slow
+ * consumer holds at most maxInFlight * rangeSize pages in memory.
+ *
+ * Only the calling thread advances the wrapped page iterator, which doesn't
+ * read the pages it returns; the pages themselves are read by the tasks.
+ * They read them for `transaction`, which isn't thread-safe, from many
+ * threads at once. This is safe only because Table.parallelIterator first
+ * locks the whole table in S mode for the transaction, on the calling thread.
+ * Every page lock the tasks request is then already held, so they never
+ * modify the transaction's locks.
+ */
+public class ParallelPageScanIterator implements Iterator<Record> {
+    // The number of pages in a range, and the number of ranges in flight, used
+    // by scans that aren't given them.
+    public static final int DEFAULT_RANGE_SIZE = 16;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 2 * Runtime.getRuntime().availableProcessors();
+
+    // The workers of every parallel scan; its threads are daemon threads.
+    private static final ForkJoinPool pool =
+        new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private Table table;
+    private BaseTransaction transaction;
+    private Iterator<Page> pageIter;
+    private int[] fields;
+    private List<ScanPredicate> predicates;
+    private int rangeSize;
+    private int maxInFlight;
+
+    // The tasks scanning the ranges that have been started but not yet taken,
+    // in order.
+    private Deque<ForkJoinTask<List<Record>>> inFlight = new ArrayDeque<>();
+
+    // The records of the range being returned.
+    private Iterator<Record> records = Collections.emptyIterator();
+
+    /**
+     * Returns the records of new PageScanIterator(table, transaction, pageIter,
+     * fields, predicates).
+     */
+    ParallelPageScanIterator(Table table, BaseTransaction transaction, Iterator<Page> pageIter,
+                             int[] fields, List<ScanPredicate> predicates) {
+        this(table, transaction, pageIter, fields, predicates, DEFAULT_RANGE_SIZE,
+             DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Same as above, except that ranges of `rangeSize` pages are scanned, with
+     * at most `maxInFlight` of them in flight at once.
+     */
+    ParallelPageScanIterator(Table table, BaseTransaction transaction, Iterator<Page> pageIter,
+                             int[] fields, List<ScanPredicate> predicates, int rangeSize,
+                             int maxInFlight) {
+        if (rangeSize < 1 || maxInFlight < 1) {
+            String err = String.format("Invalid range size %d or number of ranges %d.",
+                                       rangeSize, maxInFlight);
+            throw new IllegalArgumentException(err);
+        }
+        this.table = table;
+        this.transaction = transaction;
+        this.pageIter = pageIter;
+        this.fields = fields;
+        this.predicates = predicates;
+        this.rangeSize = rangeSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public boolean hasNext() {
+        while (!records.hasNext()) {
+            startRanges();
+            if (inFlight.isEmpty()) {
+                return false;
+            }
+            records = inFlight.pollFirst().join().iterator();
+        }
+        return true;
+    }
+
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return records.next();
+    }
+
+    /** Starts scanning ranges until `maxInFlight` of them are in flight. */
+    private void startRanges() {
+        while (inFlight.size() < maxInFlight && pageIter.hasNext()) {
+            final List<Page> range = new ArrayList<>(rangeSize);
+            while (range.size() < rangeSize && pageIter.hasNext()) {
+                range.add(pageIter.next());
+            }
+            inFlight.addLast(pool.submit(new Callable<List<Record>>() {
+                public List<Record> call() {
+                    return scan(range);
+                }
+            }));
+        }
+    }
+
+    private List<Record> scan(List<Page> range) {
+        List<Record> matches = new ArrayList<>();
+        Iterator<Record> iter = new PageScanIterator(table, transaction, range.iterator(), fields,
+                predicates);
+        while (iter.hasNext()) {
+            matches.add(iter.next());
+        }
+        return matches;
+    }
+}
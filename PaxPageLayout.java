@@ -0,0 +1,117 @@
+package edu.berkeley.cs186.database.table;
+
+import java.util.List;
+
+import edu.berkeley.cs186.database.BaseTransaction;
+import edu.berkeley.cs186.database.common.Buffer;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.io.Page;
+
+/**
+ * A PAX (Partition Attributes Across) layout for analytic tables. A PAX data
+ * page holds the same records as a fixed-width data page, but instead of
+ * storing the fields of each record together, it stores each field of every
+ * record together, in a minipage per column:
+ *
+ *   +--------+------------------+------------------+-----+
+ *   | bitmap | minipage 0       | minipage 1       | ... |
+ *   +--------+------------------+------------------+-----+
+ *
+ * Minipage i holds field i of entries 0, 1, ..., m - 1 one after another, each
+ * taking up the size of its type, so field i of entry e is at
+ *
+ *   bitmap size + m * (offset of field i in a fixed-width record)
+ *               + e * (size of field i)
+ *
+ * Since the minipages take up exactly as much space as m fixed-width records,
+ * a PAX page holds as many records as a fixed-width page, in the same entries,
+ * so record ids are unaffected by the layout.
+ *
+ * Scans that only need a few of a table's columns (say, an aggregate over one
+ * column, or a filter on one column) only ever touch the bytes of those
+ * columns' minipages, which are contiguous, rather than striding over every
+ * byte of every record. In exchange, reading or writing a whole record touches
+ * one spot in every minipage.
+ */
+class PaxPageLayout extends PageLayout {
+    // The offset of every minipage within a page, and the size of every field.
+    private int[] minipageOffsets;
+    private int[] fieldSizes;
+
+    // The format of the records of a page, as seen by scans; see
+    // getPageRecordFormat.
+    private RecordFormat pageRecordFormat;
+
+    PaxPageLayout(Schema schema, int pageSize) {
+        super(schema, pageSize, RecordFormat.fixed(schema));
+        this.numRecordsPerPage = Table.computeNumRecordsPerPage(pageSize, schema);
+        this.bitmapSizeInBytes = Table.computeBitmapSizeInBytes(pageSize, schema);
+
+        List<Type> types = schema.getFieldTypes();
+        this.minipageOffsets = new int[types.size()];
+        this.fieldSizes = new int[types.size()];
+        int offset = bitmapSizeInBytes;
+        for (int i = 0; i < types.size(); ++i) {
+            minipageOffsets[i] = offset;
+            fieldSizes[i] = types.get(i).getSizeInBytes();
+            offset += numRecordsPerPage * fieldSizes[i];
+        }
+        assert(offset <= pageSize);
+        this.pageRecordFormat = RecordFormat.columnar(schema, minipageOffsets);
+    }
+
+    @Override
+    Table.PageFormat getFormat() {
+        return Table.PageFormat.PAX;
+    }
+
+    /**
+     * The records of a PAX page aren't contiguous, so scans address them with
+     * the columnar RecordFormat, in which the "offset" of a record is its entry
+     * number.
+     */
+    @Override
+    RecordFormat getPageRecordFormat() {
+        return pageRecordFormat;
+    }
+
+    @Override
+    int getRecordOffset(byte[] page, int entryNum) {
+        return entryNum;
+    }
+
+    @Override
+    byte[] getRecordBytes(BaseTransaction transaction, Page page, int entryNum) {
+        byte[] bytes = new byte[schema.getSizeInBytes()];
+        Buffer buf = page.getBuffer(transaction);
+        int offset = 0;
+        for (int i = 0; i < fieldSizes.length; ++i) {
+            byte[] field = new byte[fieldSizes[i]];
+            buf.position(minipageOffsets[i] + entryNum * fieldSizes[i]);
+            buf.get(field);
+            System.arraycopy(field, 0, bytes, offset, fieldSizes[i]);
+            offset += fieldSizes[i];
+        }
+        return bytes;
+    }
+
+    @Override
+    boolean putRecord(BaseTransaction transaction, Page page, int entryNum, byte[] bytes) {
+        Buffer buf = page.getBuffer(transaction);
+        int offset = 0;
+        for (int i = 0; i < fieldSizes.length; ++i) {
+            byte[] field = new byte[fieldSizes[i]];
+            System.arraycopy(bytes, offset, field, 0, fieldSizes[i]);
+            buf.position(minipageOffsets[i] + entryNum * fieldSizes[i]);
+            buf.put(field);
+            offset += fieldSizes[i];
+        }
+        return true;
+    }
+
+    @Override
+    void removeRecord(BaseTransaction transaction, Page page, int entryNum) {
+        // Every entry has its own space in every minipage, so there's nothing
+        // to release.
+    }
+}
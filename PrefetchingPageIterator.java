@@ -0,0 +1,187 @@
+package edu.berkeley.cs186.database.table;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import edu.berkeley.cs186.database.BaseTransaction;
+import edu.berkeley.cs186.database.io.Page;
+
+/**
+ * A PrefetchingPageIterator wraps an iterator over the pages of a table and
+ * reads ahead of it: while the caller is busy with one page, the next
+ * `window` pages are fetched on a background thread, so that a sequential
+ * scan doesn't block on every page fetch. For example,
+ *
+ *   Iterator<Page> pages = t.pageIterator(transaction, 8);
+ *
+ * returns the same pages in the same order as the wrapped iterator, but with
+ * up to 8 of them fetched ahead of time. Every page fetched ahead is held in
+ * memory until it is returned, so the window should fit in the memory the
+ * operator is allowed to use.
+ *
+ * Read ahead is done by at most one task per iterator at a time, on a shared
+ * pool of daemon threads, so the wrapped iterator is only ever advanced by one
+ * thread at a time. The task fetches pages until the window is full and then
+ * finishes, and is resubmitted once the caller has taken a page, so an
+ * iterator that is abandoned partway through doesn't leave a thread behind.
+ *
+ * The task fetches pages for `transaction`, which isn't thread-safe, while
+ * the caller may be using it too. The table must therefore already be locked
+ * in S mode for the transaction, which Table.pageIterator and Table.iterator
+ * do on the calling thread before creating the iterator. The task's page
+ * lock requests are then already satisfied and don't modify the
+ * transaction's locks.
+ */
+public class PrefetchingPageIterator implements Iterator<Page> {
+    // The window used by operators that aren't given one.
+    public static final int DEFAULT_WINDOW = 8;
+
+    private static final ExecutorService prefetcher = Executors.newCachedThreadPool(
+    new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "page-prefetcher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private BaseTransaction transaction;
+    private Iterator<Page> pages;
+    private int window;
+
+    // Guards everything below.
+    private final Object lock = new Object();
+
+    // The pages fetched ahead of time, but not yet returned, in order.
+    private Deque<Page> prefetched = new ArrayDeque<>();
+
+    // True while the fetch task is submitted or running. Only the fetch task
+    // advances `pages`.
+    private boolean fetching = false;
+
+    // True once `pages` has run out.
+    private boolean exhausted = false;
+
+    // The exception thrown by `pages` in a fetch task, if any. It is rethrown
+    // to the caller once the pages before it have been returned.
+    private RuntimeException failure = null;
+
+    public PrefetchingPageIterator(BaseTransaction transaction, Iterator<Page> pages,
+                                   int window) {
+        if (window < 1) {
+            String err = String.format("Invalid read-ahead window %d.", window);
+            throw new IllegalArgumentException(err);
+        }
+        this.transaction = transaction;
+        this.pages = pages;
+        this.window = window;
+    }
+
+    /**
+     * Returns `pages` wrapped in a PrefetchingPageIterator with read-ahead
+     * window `window`, or `pages` itself if `window` is 0.
+     */
+    public static Iterator<Page> wrap(BaseTransaction transaction, Iterator<Page> pages,
+                                      int window) {
+        if (window == 0) {
+            return pages;
+        }
+        return new PrefetchingPageIterator(transaction, pages, window);
+    }
+
+    public boolean hasNext() {
+        synchronized (lock) {
+            fillWindow();
+            while (prefetched.isEmpty() && fetching) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            if (prefetched.isEmpty() && failure != null) {
+                RuntimeException e = failure;
+                failure = null;
+                throw e;
+            }
+            return !prefetched.isEmpty();
+        }
+    }
+
+    public Page next() {
+        synchronized (lock) {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Page page = prefetched.pollFirst();
+            fillWindow();
+            return page;
+        }
+    }
+
+    /**
+     * Submits the fetch task if it isn't running and there is room in the
+     * window. Must be called with `lock` held.
+     */
+    private void fillWindow() {
+        if (!fetching && !nothingToFetch()) {
+            fetching = true;
+            prefetcher.submit(new Runnable() {
+                public void run() {
+                    fetch();
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns whether the fetch task should stop, because the window is full
+     * or there are no more pages to fetch. Must be called with `lock` held.
+     */
+    private boolean nothingToFetch() {
+        return exhausted || failure != null || prefetched.size() >= window;
+    }
+
+    /** Fetches the next pages of `pages` until the window is full. */
+    private void fetch() {
+        while (true) {
+            synchronized (lock) {
+                if (nothingToFetch()) {
+                    fetching = false;
+                    lock.notifyAll();
+                    return;
+                }
+            }
+
+            Page page = null;
+            RuntimeException error = null;
+            try {
+                if (pages.hasNext()) {
+                    page = pages.next();
+                    // Touch the page so that it is actually read in now, rather
+                    // than when the caller gets to it.
+                    page.getBuffer(transaction).get();
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            synchronized (lock) {
+                if (page != null) {
+                    prefetched.addLast(page);
+                } else if (error != null) {
+                    failure = error;
+                } else {
+                    exhausted = true;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+}
@@ -23,6 +23,11 @@ public class QueryPlan {
         GREATER_THAN_EQUALS
     }
 
+    // The number of data pages a table must have for execute to scan it in parallel; see
+    // SequentialScanOperator.setParallel. Smaller tables are scanned before the workers of a
+    // parallel scan would have started.
+    private static final int PARALLEL_SCAN_MIN_PAGES = 64;
+
     private Database.Transaction transaction;
     private QueryOperator finalOperator;
     private String startTableName;
@@ -183,11 +188,32 @@ public class QueryPlan {
         if (indexColumn != null) {
             this.generateIndexPlan(indexColumn);
         } else {
-            // start off with the start table scan as the source
-            this.finalOperator = new SequentialScanOperator(this.transaction, this.startTableName);
+            // start off with the start table scan as the source. When there are no joins, every
+            // select is on the start table, so the scan evaluates the selects itself and only reads
+            // the columns the rest of the plan uses.
+            if (this.joinTableNames.isEmpty()) {
+                SequentialScanOperator scanOperator = new SequentialScanOperator(this.transaction,
+                        this.startTableName, this.getRequiredColumns());
+                for (int i = 0; i < this.selectColumnNames.size(); i++) {
+                    scanOperator.select(this.selectColumnNames.get(i), this.selectOperators.get(i),
+                                        this.selectDataBoxes.get(i));
+                }
+                // A scan that filters its records, or feeds an aggregate, does enough work per
+                // page to be worth spreading over every core once the table is large.
+                boolean aggregates = this.groupByColumn != null || this.hasCount
+                                     || this.sumColumnName != null || this.averageColumnName != null;
+                int numPages = this.transaction.getNumDataPages(this.startTableName);
+                if ((scanOperator.hasPredicates() || aggregates) &&
+                        numPages >= PARALLEL_SCAN_MIN_PAGES) {
+                    scanOperator.setParallel(true);
+                }
+                this.finalOperator = scanOperator;
+            } else {
+                this.finalOperator = new SequentialScanOperator(this.transaction, this.startTableName);
 
-            this.addJoins();
-            this.addSelects();
+                this.addJoins();
+                this.addSelects();
+            }
             this.addGroupBy();
             this.addProjects();
         }
@@ -403,6 +429,35 @@ public class QueryPlan {
         return null;
     }
 
+    /**
+     * Returns the columns of the start table read by the group by, projects, and aggregates of
+     * this query, or null if the query outputs every column (i.e. it has no projects or
+     * aggregates). Columns only read by selects are left out; the selects are pushed down into
+     * the scan, which evaluates them without outputting their columns. If the query reads no
+     * columns at all (e.g. a lone count(*)), the scan keeps one column of the table.
+     */
+    private List<String> getRequiredColumns() throws DatabaseException {
+        if (this.projectColumns.isEmpty() && this.sumColumnName == null
+                && this.averageColumnName == null && !this.hasCount) {
+            return null;
+        }
+
+        List<String> columns = new ArrayList<String>(this.projectColumns);
+        if (this.groupByColumn != null) {
+            columns.add(this.groupByColumn);
+        }
+        if (this.sumColumnName != null) {
+            columns.add(this.sumColumnName);
+        }
+        if (this.averageColumnName != null) {
+            columns.add(this.averageColumnName);
+        }
+        if (columns.isEmpty()) {
+            columns.add(this.transaction.getSchema(this.startTableName).getFieldNames().get(0));
+        }
+        return columns;
+    }
+
     private void generateIndexPlan(String indexColumn) throws QueryPlanException, DatabaseException {
         int selectIndex = this.selectColumnNames.indexOf(indexColumn);
         PredicateOperator operator = this.selectOperators.get(selectIndex);
@@ -20,9 +20,17 @@ public class Record {
         return this.values;
     }
 
+    /**
+     * Returns the ith value of this record. Unlike getValues().get(i), this
+     * doesn't force a RecordView to decode all of its values.
+     */
+    public DataBox getValue(int i) {
+        return getValues().get(i);
+    }
+
     public byte[] toBytes(Schema schema) {
         ByteBuffer byteBuffer = ByteBuffer.allocate(schema.getSizeInBytes());
-        for (DataBox value : values) {
+        for (DataBox value : getValues()) {
             byteBuffer.put(value.toBytes());
         }
         return byteBuffer.array();
@@ -46,7 +54,7 @@ public class Record {
 
     @Override
     public String toString() {
-        return values.toString();
+        return getValues().toString();
     }
 
     @Override
@@ -58,11 +66,11 @@ public class Record {
             return false;
         }
         Record r = (Record) o;
-        return values.equals(r.values);
+        return getValues().equals(r.getValues());
     }
 
     @Override
     public int hashCode() {
-        return values.hashCode();
+        return getValues().hashCode();
     }
 }
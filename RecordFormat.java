@@ -0,0 +1,264 @@
+package edu.berkeley.cs186.database.table;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.StringDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.databox.TypeId;
+
+/**
+ * A RecordFormat describes how the records of a schema are serialized inside
+ * of a table's data pages. There are three formats:
+ *
+ *   - The fixed-width format (RecordFormat.fixed) is the one Record.toBytes
+ *     writes: the fields of the record one after another, with every string
+ *     padded to the full length of its type. Every record of a schema is
+ *     schema.getSizeInBytes() bytes long.
+ *   - The variable-length format (RecordFormat.variableLength) stores strings
+ *     without their trailing padding. A record consists of a fixed-width part
+ *     followed by the bytes of its strings. The fixed-width part holds the
+ *     fields of the record in order, except that every string is replaced by
+ *     its 2-byte length. The strings then follow in order. For example, a
+ *     record (1, "ab   ", 2.0) of schema (int, string(5), float) is stored as
+ *
+ *       +---------+---------+---------+-----------+
+ *       | 1       | 2       | 2.0     | "ab"      |
+ *       +---------+---------+---------+-----------+
+ *        4 bytes   2 bytes   4 bytes   2 bytes
+ *
+ *     Every field other than a string is at the same offset in every record,
+ *     and so is the length of every string.
+ *   - The columnar format (RecordFormat.columnar) describes records that are
+ *     not stored contiguously at all, but are spread across the columns of a
+ *     PAX page (see PaxPageLayout). Field i of every record is stored
+ *     fixed-width in a column beginning at columnOffsets[i], so field i of the
+ *     record in entry e is at columnOffsets[i] + e * (the size of field i). In
+ *     this format, the "offset" of a record passed to the methods below is its
+ *     entry number.
+ *
+ * Strings only ever contain ASCII characters (see StringDataBox), so the
+ * number of bytes in a string is the same as its number of characters.
+ */
+public final class RecordFormat {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private Schema schema;
+    private boolean variableLength;
+
+    // The offset of every field within the fixed-width part of a record. In the
+    // variable-length format, the offset of a string field is the offset of its
+    // length.
+    private int[] fieldOffsets;
+
+    // The size of the fixed-width part of a record.
+    private int fixedSizeInBytes;
+
+    // stringIndices[i] is the number of string fields before field i if field
+    // i is a string, or -1 otherwise (variable-length format only).
+    private int[] stringIndices;
+
+    // The offsets of the lengths of the string fields, in order
+    // (variable-length format only).
+    private int[] stringLengthOffsets;
+
+    // The offset of the column of every field (columnar format only, null
+    // otherwise).
+    private int[] columnOffsets;
+
+    private RecordFormat(Schema schema, boolean variableLength, int[] columnOffsets) {
+        this.schema = schema;
+        this.variableLength = variableLength;
+        this.columnOffsets = columnOffsets;
+
+        List<Type> types = schema.getFieldTypes();
+        this.fieldOffsets = new int[types.size()];
+        this.stringIndices = new int[types.size()];
+        List<Integer> lengthOffsets = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; i < types.size(); ++i) {
+            fieldOffsets[i] = offset;
+            if (variableLength && types.get(i).getTypeId() == TypeId.STRING) {
+                stringIndices[i] = lengthOffsets.size();
+                lengthOffsets.add(offset);
+                offset += Short.BYTES;
+            } else {
+                stringIndices[i] = -1;
+                offset += types.get(i).getSizeInBytes();
+            }
+        }
+        this.fixedSizeInBytes = offset;
+        this.stringLengthOffsets = new int[lengthOffsets.size()];
+        for (int i = 0; i < lengthOffsets.size(); ++i) {
+            stringLengthOffsets[i] = lengthOffsets.get(i);
+        }
+    }
+
+    /** The format written by Record.toBytes. */
+    public static RecordFormat fixed(Schema schema) {
+        return new RecordFormat(schema, false, null);
+    }
+
+    /** The format described above, in which strings are not padded. */
+    public static RecordFormat variableLength(Schema schema) {
+        return new RecordFormat(schema, true, null);
+    }
+
+    /**
+     * The format described above, in which field i of every record is stored
+     * in a column beginning at columnOffsets[i].
+     */
+    public static RecordFormat columnar(Schema schema, int[] columnOffsets) {
+        return new RecordFormat(schema, false, columnOffsets);
+    }
+
+    // Accessors /////////////////////////////////////////////////////////////////
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public boolean isVariableLength() {
+        return variableLength;
+    }
+
+    public boolean isColumnar() {
+        return columnOffsets != null;
+    }
+
+    /** Returns the size (in bytes) of the smallest possible record. */
+    public int getMinSizeInBytes() {
+        return fixedSizeInBytes;
+    }
+
+    /** Returns the size (in bytes) of the largest possible record. */
+    public int getMaxSizeInBytes() {
+        int size = fixedSizeInBytes;
+        for (int i = 0; i < stringIndices.length; ++i) {
+            if (stringIndices[i] != -1) {
+                size += schema.getFieldTypes().get(i).getSizeInBytes();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the size (in bytes) of the record serialized in `bytes` at
+     * `offset`.
+     */
+    public int getSizeInBytes(byte[] bytes, int offset) {
+        int size = fixedSizeInBytes;
+        for (int lengthOffset : stringLengthOffsets) {
+            size += getShort(bytes, offset + lengthOffset);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the offset within `bytes` of field `field` of the record
+     * serialized in `bytes` at `offset`.
+     */
+    public int getFieldOffset(byte[] bytes, int offset, int field) {
+        if (columnOffsets != null) {
+            return columnOffsets[field] + offset * schema.getFieldTypes().get(field).getSizeInBytes();
+        }
+        int s = stringIndices[field];
+        if (s == -1) {
+            return offset + fieldOffsets[field];
+        }
+        int fieldOffset = offset + fixedSizeInBytes;
+        for (int i = 0; i < s; ++i) {
+            fieldOffset += getShort(bytes, offset + stringLengthOffsets[i]);
+        }
+        return fieldOffset;
+    }
+
+    /**
+     * Returns the number of bytes that field `field` of the record serialized
+     * in `bytes` at `offset` occupies. Only strings in the variable-length
+     * format can be shorter than their type.
+     */
+    public int getFieldSizeInBytes(byte[] bytes, int offset, int field) {
+        int s = stringIndices[field];
+        if (s == -1) {
+            return schema.getFieldTypes().get(field).getSizeInBytes();
+        }
+        return getShort(bytes, offset + stringLengthOffsets[s]);
+    }
+
+    // Serialization /////////////////////////////////////////////////////////////
+    /**
+     * Decodes field `field` of the record serialized in `bytes` at `offset`.
+     */
+    public DataBox getValue(byte[] bytes, int offset, int field) {
+        Type type = schema.getFieldTypes().get(field);
+        if (stringIndices[field] == -1) {
+            return DataBox.fromBytes(bytes, getFieldOffset(bytes, offset, field), type);
+        }
+        int fieldOffset = getFieldOffset(bytes, offset, field);
+        int length = getShort(bytes, offset + fieldOffsets[field]);
+        String s = new String(bytes, fieldOffset, length, UTF8);
+        return new StringDataBox(s, type.getSizeInBytes());
+    }
+
+    /** Decodes the whole record serialized in `bytes` at `offset`. */
+    public Record fromBytes(byte[] bytes, int offset) {
+        List<DataBox> values = new ArrayList<>(fieldOffsets.length);
+        for (int i = 0; i < fieldOffsets.length; ++i) {
+            values.add(getValue(bytes, offset, i));
+        }
+        return new Record(values);
+    }
+
+    /**
+     * Serializes `record` in this format. Records in the columnar format are
+     * not contiguous, so they are serialized in the fixed-width format.
+     */
+    public byte[] toBytes(Record record) {
+        if (!variableLength) {
+            return record.toBytes(schema);
+        }
+
+        List<DataBox> values = record.getValues();
+        byte[][] strings = new byte[stringLengthOffsets.length][];
+        int size = fixedSizeInBytes;
+        for (int i = 0; i < values.size(); ++i) {
+            if (stringIndices[i] != -1) {
+                byte[] s = trimPadding(values.get(i).getString()).getBytes(UTF8);
+                strings[stringIndices[i]] = s;
+                size += s.length;
+            }
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        for (int i = 0; i < values.size(); ++i) {
+            if (stringIndices[i] == -1) {
+                buf.put(values.get(i).toBytes());
+            } else {
+                buf.putShort((short) strings[stringIndices[i]].length);
+            }
+        }
+        for (byte[] s : strings) {
+            buf.put(s);
+        }
+        return buf.array();
+    }
+
+    // Helpers ///////////////////////////////////////////////////////////////////
+    // StringDataBox pads strings with spaces, and pads them back when they are
+    // decoded, so the padding doesn't need to be stored.
+    private static String trimPadding(String s) {
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == ' ') {
+            --end;
+        }
+        return s.substring(0, end);
+    }
+
+    // Reads a 2-byte big-endian unsigned integer.
+    private static int getShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+}
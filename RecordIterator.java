@@ -12,9 +12,9 @@ import edu.berkeley.cs186.database.DatabaseException;
  *
  *   Iterator<RecordId> ridIterator = getRecordIdIterator();
  *   RecordIterator recordIterator = new RecordIterator(t, ridIterator);
- *   recordIterator.next(); // equivalent to t.getRecord(ridIterator.next())
- *   recordIterator.next(); // equivalent to t.getRecord(ridIterator.next())
- *   recordIterator.next(); // equivalent to t.getRecord(ridIterator.next())
+ *   recordIterator.next(); // equivalent to t.getRecordView(ridIterator.next())
+ *   recordIterator.next(); // equivalent to t.getRecordView(ridIterator.next())
+ *   recordIterator.next(); // equivalent to t.getRecordView(ridIterator.next())
  */
 public class RecordIterator implements BacktrackingIterator<Record> {
     private Iterator<RecordId> ridIter;
@@ -37,7 +37,7 @@ public class RecordIterator implements BacktrackingIterator<Record> {
 
     public Record next() {
         try {
-            return table.getRecord(transaction, ridIter.next());
+            return table.getRecordView(transaction, ridIter.next());
         } catch (DatabaseException e) {
             throw new IllegalStateException(e);
         }
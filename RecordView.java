@@ -0,0 +1,93 @@
+package edu.berkeley.cs186.database.table;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.berkeley.cs186.database.databox.DataBox;
+
+/**
+ * A RecordView is a Record that decodes its values lazily from the serialized
+ * bytes of the record (as written by Record.toBytes, or more generally in some
+ * RecordFormat). For example,
+ *
+ *   RecordView r = new RecordView(bytes, offset, schema);
+ *   r.getValue(1);  // decodes only field 1
+ *   r.getValue(1);  // returns the same DataBox without decoding it again
+ *   r.getValues();  // decodes the remaining fields
+ *
+ * Many views can share a single byte array: a scan copies each page into one
+ * array and hands out one view per record on the page, so a record whose
+ * values are never asked for costs a single small object. The byte array must
+ * not be modified once views have been created over it.
+ *
+ * A view can also expose just some of the fields of the record it is over:
+ *
+ *   // A record with fields 0 and 2 of a record of `schema`.
+ *   RecordView r = new RecordView(bytes, offset, schema, new int[] {0, 2});
+ *   r.getValue(1);  // decodes field 2 of the underlying record
+ */
+public class RecordView extends Record {
+    private byte[] bytes;
+    private int offset;
+    private RecordFormat format;
+
+    // The fields of the underlying record that this view exposes, or null if
+    // it exposes all of them.
+    private int[] fields;
+
+    // values[i] is the decoded value of field i, or null if it hasn't been
+    // decoded yet.
+    private DataBox[] values;
+
+    // All of the values, once getValues has been called.
+    private List<DataBox> valueList;
+
+    public RecordView(byte[] bytes, int offset, Schema schema) {
+        this(bytes, offset, RecordFormat.fixed(schema), null);
+    }
+
+    /**
+     * Creates a view whose ith value is field fields[i] of the record of
+     * `schema` serialized at `offset`. If `fields` is null, the view exposes
+     * every field.
+     */
+    public RecordView(byte[] bytes, int offset, Schema schema, int[] fields) {
+        this(bytes, offset, RecordFormat.fixed(schema), fields);
+    }
+
+    /**
+     * Same as above, except that the record is serialized in `format` rather
+     * than in the format written by Record.toBytes.
+     */
+    public RecordView(byte[] bytes, int offset, RecordFormat format, int[] fields) {
+        super(null);
+        this.bytes = bytes;
+        this.offset = offset;
+        this.format = format;
+        this.fields = fields;
+        int numFields = fields == null ? format.getSchema().getFieldTypes().size() : fields.length;
+        this.values = new DataBox[numFields];
+        this.valueList = null;
+    }
+
+    @Override
+    public DataBox getValue(int i) {
+        if (values[i] == null) {
+            int field = fields == null ? i : fields[i];
+            values[i] = format.getValue(bytes, offset, field);
+        }
+        return values[i];
+    }
+
+    @Override
+    public List<DataBox> getValues() {
+        if (valueList == null) {
+            List<DataBox> list = new ArrayList<>(values.length);
+            for (int i = 0; i < values.length; ++i) {
+                list.add(getValue(i));
+            }
+            valueList = list;
+        }
+        return valueList;
+    }
+}
@@ -118,8 +118,8 @@ public class SNLJOperator extends JoinOperator {
             this.nextRecord = null;
             do {
                 if (this.rightRecord != null) {
-                    DataBox leftJoinValue = this.leftRecord.getValues().get(SNLJOperator.this.getLeftColumnIndex());
-                    DataBox rightJoinValue = rightRecord.getValues().get(SNLJOperator.this.getRightColumnIndex());
+                    DataBox leftJoinValue = this.leftRecord.getValue(SNLJOperator.this.getLeftColumnIndex());
+                    DataBox rightJoinValue = rightRecord.getValue(SNLJOperator.this.getRightColumnIndex());
                     if (leftJoinValue.equals(rightJoinValue)) {
                         List<DataBox> leftValues = new ArrayList<>(this.leftRecord.getValues());
                         List<DataBox> rightValues = new ArrayList<>(rightRecord.getValues());
@@ -0,0 +1,146 @@
+package edu.berkeley.cs186.database.table;
+
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.query.QueryPlan;
+
+/**
+ * A ScanPredicate is a predicate of the form `field <operator> value` that is
+ * evaluated directly against the serialized bytes of a record (in some
+ * RecordFormat) without decoding the record or allocating any DataBoxes.
+ * For example,
+ *
+ *   // x < 10
+ *   ScanPredicate p = new ScanPredicate(schema, 0, PredicateOperator.LESS_THAN,
+ *                                       new IntDataBox(10));
+ *   // true if the record at `offset` has x < 10
+ *   p.matches(RecordFormat.fixed(schema), bytes, offset);
+ *
+ * A ScanPredicate agrees with DataBox: EQUALS and NOT_EQUALS follow
+ * DataBox.equals and the remaining operators follow the sign of
+ * DataBox.compareTo.
+ */
+public class ScanPredicate {
+    private int field;
+    private QueryPlan.PredicateOperator operator;
+    private DataBox value;
+
+    // The type of `field`.
+    private Type type;
+
+    // The serialized value, for comparing against strings and booleans.
+    private byte[] valueBytes;
+
+    // True if `value` has the same kind of type as `field`. Otherwise, we fall
+    // back to decoding the field and comparing DataBoxes, which fails the same
+    // way a comparison of mismatched DataBoxes would.
+    private boolean sameType;
+
+    public ScanPredicate(Schema schema, int field, QueryPlan.PredicateOperator operator,
+                         DataBox value) {
+        this.field = field;
+        this.operator = operator;
+        this.value = value;
+        this.type = schema.getFieldTypes().get(field);
+        this.valueBytes = value.toBytes();
+        this.sameType = type.getTypeId() == value.type().getTypeId();
+    }
+
+    public int getField() {
+        return field;
+    }
+
+    public QueryPlan.PredicateOperator getOperator() {
+        return operator;
+    }
+
+    public DataBox getValue() {
+        return value;
+    }
+
+    /**
+     * Returns true if the record serialized in `format` in `bytes` starting at
+     * `offset` satisfies this predicate.
+     */
+    public boolean matches(RecordFormat format, byte[] bytes, int offset) {
+        int i = format.getFieldOffset(bytes, offset, field);
+        if (!sameType) {
+            DataBox d = format.getValue(bytes, offset, field);
+            if (operator == QueryPlan.PredicateOperator.EQUALS ||
+                    operator == QueryPlan.PredicateOperator.NOT_EQUALS) {
+                return matches(d.equals(value), 0);
+            }
+            return matches(false, d.compareTo(value));
+        }
+
+        switch (type.getTypeId()) {
+        case INT: {
+            int x = getInt(bytes, i);
+            int y = value.getInt();
+            return matches(x == y, Integer.compare(x, y));
+        }
+        case FLOAT: {
+            float x = Float.intBitsToFloat(getInt(bytes, i));
+            float y = value.getFloat();
+            return matches(x == y, Float.compare(x, y));
+        }
+        default: {
+            // Booleans and strings compare the same way their serialized bytes
+            // do: bytewise, with a shorter prefix ordered first. A string
+            // stored without its padding is compared as if it were padded.
+            int n = format.getFieldSizeInBytes(bytes, offset, field);
+            int cmp = compareBytes(bytes, i, n, type.getSizeInBytes(), valueBytes);
+            return matches(cmp == 0, cmp);
+        }
+        }
+    }
+
+    private boolean matches(boolean equal, int cmp) {
+        switch (operator) {
+        case EQUALS:
+            return equal;
+        case NOT_EQUALS:
+            return !equal;
+        case LESS_THAN:
+            return cmp < 0;
+        case LESS_THAN_EQUALS:
+            return cmp <= 0;
+        case GREATER_THAN:
+            return cmp > 0;
+        case GREATER_THAN_EQUALS:
+            return cmp >= 0;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Compares the `length` bytes at `offset`, padded with spaces to
+     * `paddedLength` bytes, against `other`.
+     */
+    private static int compareBytes(byte[] bytes, int offset, int length, int paddedLength,
+                                    byte[] other) {
+        int n = Math.min(paddedLength, other.length);
+        for (int j = 0; j < n; ++j) {
+            int b = j < length ? bytes[offset + j] & 0xFF : ' ';
+            int cmp = Integer.compare(b, other[j] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(paddedLength, other.length);
+    }
+
+    // Reads a 4-byte big-endian integer (the format ByteBuffer::putInt writes).
+    private static int getInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) |
+               ((bytes[offset + 1] & 0xFF) << 16) |
+               ((bytes[offset + 2] & 0xFF) << 8) |
+               (bytes[offset + 3] & 0xFF);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d %s %s", field, operator, value);
+    }
+}
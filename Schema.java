@@ -24,6 +24,7 @@ import edu.berkeley.cs186.database.databox.Type;
 public class Schema {
     private List<String> fieldNames;
     private List<Type> fieldTypes;
+    private int[] fieldOffsets;
     private int sizeInBytes;
 
     public Schema(List<String> fieldNames, List<Type> fieldTypes) {
@@ -32,8 +33,10 @@ public class Schema {
         this.fieldTypes = fieldTypes;
 
         sizeInBytes = 0;
-        for (Type t : fieldTypes) {
-            sizeInBytes += t.getSizeInBytes();
+        fieldOffsets = new int[fieldTypes.size()];
+        for (int i = 0; i < fieldTypes.size(); ++i) {
+            fieldOffsets[i] = sizeInBytes;
+            sizeInBytes += fieldTypes.get(i).getSizeInBytes();
         }
     }
 
@@ -49,6 +52,14 @@ public class Schema {
         return sizeInBytes;
     }
 
+    /**
+     * Returns the offset (in bytes) of field i within a record of this schema
+     * serialized by Record.toBytes.
+     */
+    public int getFieldOffset(int i) {
+        return fieldOffsets[i];
+    }
+
     // TODO(mwhittaker): Rename to something more descriptive.
     public Record verify(List<DataBox> values) throws DatabaseException {
         if (values.size() != fieldNames.size()) {
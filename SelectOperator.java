@@ -101,43 +101,43 @@ public class SelectOperator extends QueryOperator {
                 }
                 switch (SelectOperator.this.operator) {
                 case EQUALS:
-                    if (r.getValues().get(SelectOperator.this.columnIndex).equals(value)) {
+                    if (r.getValue(SelectOperator.this.columnIndex).equals(value)) {
                         this.nextRecord = r;
                         return true;
                     }
                     break;
                 case NOT_EQUALS:
-                    if (!r.getValues().get(SelectOperator.this.columnIndex).equals(value)) {
+                    if (!r.getValue(SelectOperator.this.columnIndex).equals(value)) {
                         this.nextRecord = r;
                         return true;
                     }
                     break;
                 case LESS_THAN:
-                    if (r.getValues().get(SelectOperator.this.columnIndex).compareTo(value) == -1) {
+                    if (r.getValue(SelectOperator.this.columnIndex).compareTo(value) < 0) {
                         this.nextRecord = r;
                         return true;
                     }
                     break;
                 case LESS_THAN_EQUALS:
-                    if (r.getValues().get(SelectOperator.this.columnIndex).compareTo(value) == -1) {
+                    if (r.getValue(SelectOperator.this.columnIndex).compareTo(value) < 0) {
                         this.nextRecord = r;
                         return true;
-                    } else if (r.getValues().get(SelectOperator.this.columnIndex).compareTo(value) == 0) {
+                    } else if (r.getValue(SelectOperator.this.columnIndex).compareTo(value) == 0) {
                         this.nextRecord = r;
                         return true;
                     }
                     break;
                 case GREATER_THAN:
-                    if (r.getValues().get(SelectOperator.this.columnIndex).compareTo(value) == 1) {
+                    if (r.getValue(SelectOperator.this.columnIndex).compareTo(value) > 0) {
                         this.nextRecord = r;
                         return true;
                     }
                     break;
                 case GREATER_THAN_EQUALS:
-                    if (r.getValues().get(SelectOperator.this.columnIndex).compareTo(value) == 1) {
+                    if (r.getValue(SelectOperator.this.columnIndex).compareTo(value) > 0) {
                         this.nextRecord = r;
                         return true;
-                    } else if (r.getValues().get(SelectOperator.this.columnIndex).compareTo(value) == 0) {
+                    } else if (r.getValue(SelectOperator.this.columnIndex).compareTo(value) == 0) {
                         this.nextRecord = r;
                         return true;
                     }
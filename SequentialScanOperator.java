@@ -1,17 +1,40 @@
 package edu.berkeley.cs186.database.query;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import edu.berkeley.cs186.database.Database;
 import edu.berkeley.cs186.database.DatabaseException;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.table.PrefetchingPageIterator;
 import edu.berkeley.cs186.database.table.Record;
+import edu.berkeley.cs186.database.table.ScanPredicate;
 import edu.berkeley.cs186.database.table.Schema;
+import edu.berkeley.cs186.database.table.stats.Histogram;
 import edu.berkeley.cs186.database.table.stats.TableStats;
 
 public class SequentialScanOperator extends QueryOperator {
     private Database.Transaction transaction;
     private String tableName;
 
+    // The columns this scan outputs, or null if it outputs every column of the
+    // table. columnIndices[i] is the index within the table of output column i.
+    private List<String> columns;
+    private int[] columnIndices;
+
+    // The predicates pushed down into this scan, and the names of the columns they are on. They
+    // refer to the columns of the table, which need not be output by this scan.
+    private List<ScanPredicate> predicates;
+    private List<String> predicateColumns;
+
+    // The number of pages read ahead of the page being scanned; see PrefetchingPageIterator.
+    private int prefetchWindow;
+
+    // True if the table's pages are scanned on every core; see ParallelPageScanIterator.
+    private boolean parallel;
+
     /**
      * Creates a new SequentialScanOperator that provides an iterator on all tuples in a table.
      *
@@ -25,9 +48,32 @@ public class SequentialScanOperator extends QueryOperator {
      */
     public SequentialScanOperator(Database.Transaction transaction,
                                   String tableName) throws QueryPlanException, DatabaseException {
+        this(transaction, tableName, null);
+    }
+
+    /**
+     * Creates a new SequentialScanOperator that provides an iterator on the given columns of all
+     * tuples in a table. Only those columns are decoded from the table's pages, and they are output
+     * in the order in which they appear in the table. If columns is null, every column is output.
+     *
+     * @param transaction
+     * @param tableName
+     * @param columns the columns to output, or null for all of them
+     * @throws QueryPlanException
+     * @throws DatabaseException
+     */
+    public SequentialScanOperator(Database.Transaction transaction,
+                                  String tableName,
+                                  List<String> columns) throws QueryPlanException, DatabaseException {
         super(OperatorType.SEQSCAN);
         this.transaction = transaction;
         this.tableName = tableName;
+        this.columns = columns;
+        this.columnIndices = null;
+        this.predicates = new ArrayList<ScanPredicate>();
+        this.predicateColumns = new ArrayList<String>();
+        this.prefetchWindow = PrefetchingPageIterator.DEFAULT_WINDOW;
+        this.parallel = false;
         this.setOutputSchema(this.computeSchema());
 
         this.stats = this.estimateStats();
@@ -38,11 +84,124 @@ public class SequentialScanOperator extends QueryOperator {
         return this.tableName;
     }
 
-    public Iterator<Record> iterator() throws DatabaseException {
-        return this.transaction.getRecordIterator(tableName);
+    /**
+     * Returns true if this scan outputs only some of the columns of its table, in which case its
+     * records are not the records of the table.
+     */
+    public boolean isProjected() {
+        return this.columnIndices != null;
+    }
+
+    /**
+     * Pushes the predicate `column operator value` down into this scan, so that only the tuples
+     * that satisfy it are output. The predicate is evaluated against the serialized tuples in the
+     * table's pages, so tuples that don't satisfy it are never decoded. The column need not be one
+     * of the columns output by this scan.
+     *
+     * @param column the name of the column to evaluate the predicate on
+     * @param operator the actual comparator
+     * @param value the value to compare against
+     * @throws QueryPlanException
+     */
+    public void select(String column, QueryPlan.PredicateOperator operator,
+                       DataBox value) throws QueryPlanException {
+        Schema tableSchema = this.getTableSchema();
+        column = this.checkSchemaForColumn(tableSchema, column);
+        int index = tableSchema.getFieldNames().indexOf(column);
+        this.predicates.add(new ScanPredicate(tableSchema, index, operator, value));
+        this.predicateColumns.add(column);
+
+        this.stats = this.estimateStats();
+    }
+
+    public int getPrefetchWindow() {
+        return this.prefetchWindow;
+    }
+
+    /**
+     * Sets the number of pages this scan reads ahead of the page it is scanning, on a background
+     * thread, or 0 to read pages only when they are needed.
+     *
+     * @param prefetchWindow the number of pages to read ahead
+     */
+    public void setPrefetchWindow(int prefetchWindow) {
+        this.prefetchWindow = prefetchWindow;
+    }
+
+    public boolean isParallel() {
+        return this.parallel;
+    }
+
+    /**
+     * Sets whether this scan reads, decodes and filters the table's pages on every core, rather
+     * than one page at a time on the calling thread. Records are output in the same order either
+     * way. A parallel scan reads pages on its worker threads, so it ignores getPrefetchWindow().
+     *
+     * @param parallel true to scan in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Returns true if this scan filters its tuples, in which case its records are not the records
+     * of the table.
+     */
+    public boolean hasPredicates() {
+        return !this.predicates.isEmpty();
+    }
+
+    /**
+     * Returns an iterator over the records of the table. Records are read a
+     * page at a time and their values are only decoded when they are used; see
+     * PageScanIterator. Up to getPrefetchWindow() pages are read ahead. If this scan is
+     * parallel, ranges of pages are scanned on every core instead; see ParallelPageScanIterator.
+     * Either way, the table is read through the transaction, like any other scan.
+     */
+    public Iterator<Record> iterator() throws QueryPlanException, DatabaseException {
+        if (this.parallel) {
+            return this.transaction.getParallelRecordIterator(this.tableName, this.columnIndices,
+                    this.predicates);
+        }
+        return this.transaction.getRecordIterator(this.tableName, this.columnIndices,
+                this.predicates, this.prefetchWindow);
     }
 
     public Schema computeSchema() throws QueryPlanException {
+        Schema tableSchema = this.getTableSchema();
+        if (this.columns == null) {
+            return tableSchema;
+        }
+
+        List<String> tableColumnNames = tableSchema.getFieldNames();
+        boolean[] required = new boolean[tableColumnNames.size()];
+        for (String column : this.columns) {
+            required[tableColumnNames.indexOf(this.checkSchemaForColumn(tableSchema, column))] = true;
+        }
+
+        List<Integer> indices = new ArrayList<Integer>();
+        List<String> columnNames = new ArrayList<String>();
+        List<Type> columnTypes = new ArrayList<>();
+        for (int i = 0; i < required.length; i++) {
+            if (required[i]) {
+                indices.add(i);
+                columnNames.add(tableColumnNames.get(i));
+                columnTypes.add(tableSchema.getFieldTypes().get(i));
+            }
+        }
+        if (indices.isEmpty() || indices.size() == required.length) {
+            this.columnIndices = null;
+            return tableSchema;
+        }
+
+        this.columnIndices = new int[indices.size()];
+        for (int i = 0; i < indices.size(); i++) {
+            this.columnIndices[i] = indices.get(i);
+        }
+        return new Schema(columnNames, columnTypes);
+    }
+
+    private Schema getTableSchema() throws QueryPlanException {
         try {
             return this.transaction.getFullyQualifiedSchema(this.tableName);
         } catch (DatabaseException de) {
@@ -51,8 +210,20 @@ public class SequentialScanOperator extends QueryOperator {
     }
 
     public String str() {
-        return "type: " + this.getType() +
-               "\ntable: " + this.tableName;
+        String s = "type: " + this.getType() +
+                   "\ntable: " + this.tableName;
+        if (this.isProjected()) {
+            s += "\ncolumns: " + this.getOutputSchema().getFieldNames();
+        }
+        for (int i = 0; i < this.predicates.size(); i++) {
+            ScanPredicate predicate = this.predicates.get(i);
+            s += "\npredicate: " + this.predicateColumns.get(i) +
+                 " " + predicate.getOperator() + " " + predicate.getValue();
+        }
+        if (this.parallel) {
+            s += "\nparallel: true";
+        }
+        return s;
     }
 
     /**
@@ -61,11 +232,27 @@ public class SequentialScanOperator extends QueryOperator {
      * @return estimated TableStats
      */
     public TableStats estimateStats() throws QueryPlanException {
+        TableStats stats;
         try {
-            return this.transaction.getStats(this.tableName);
+            stats = this.transaction.getStats(this.tableName);
         } catch (DatabaseException de) {
             throw new QueryPlanException(de);
         }
+        for (ScanPredicate predicate : this.predicates) {
+            stats = stats.copyWithPredicate(predicate.getField(), predicate.getOperator(),
+                                            predicate.getValue());
+        }
+        if (!this.isProjected()) {
+            return stats;
+        }
+
+        // Keep only the histograms of the columns we output so that operators above us can index
+        // them by their position in our output schema.
+        List<Histogram> histograms = new ArrayList<Histogram>();
+        for (int i : this.columnIndices) {
+            histograms.add(stats.getHistograms().get(i));
+        }
+        return new TableStats(this.getOutputSchema(), histograms);
     }
 
     public int estimateIOCost() throws QueryPlanException {
@@ -0,0 +1,194 @@
+package edu.berkeley.cs186.database.table;
+
+import java.nio.ByteBuffer;
+
+import edu.berkeley.cs186.database.BaseTransaction;
+import edu.berkeley.cs186.database.common.Buffer;
+import edu.berkeley.cs186.database.io.Page;
+
+/**
+ * A slotted layout for tables with strings, whose records are stored in the
+ * variable-length RecordFormat so that short strings don't take up the full
+ * length of their type. A slotted data page looks like this:
+ *
+ *   +--------+-----------+-----------+--------------+------+------------+
+ *   | bitmap | heapStart | slotCount | slots        | free | heap       |
+ *   +--------+-----------+-----------+--------------+------+------------+
+ *              4 bytes     4 bytes     2 bytes each         ^ heapStart
+ *
+ *   - The bitmap is the same as in every other layout.
+ *   - The records are stored in the heap, which grows from the end of the
+ *     page towards its beginning. heapStart is the offset of the beginning of
+ *     the heap, or 0 if the heap is empty.
+ *   - Slot i holds the offset of the record in entry i, or 0 if entry i is
+ *     empty. Only the first slotCount slots are stored; entries are filled
+ *     lowest first, so the slot array only grows as far as it needs to.
+ *
+ * A record never moves to a different entry, so record ids are stable. It
+ * may move within its page: when a record doesn't fit in the free space
+ * between the slots and the heap, but would fit if the space left behind by
+ * deleted or shrunk records were reclaimed, the heap is compacted.
+ *
+ * The number of entries per page is chosen so that a page full of the
+ * smallest possible records has an entry for each of them. A page full of
+ * larger records runs out of space before it runs out of entries.
+ */
+class SlottedPageLayout extends PageLayout {
+    // The size of heapStart and slotCount.
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    // The offsets of heapStart and of the first slot.
+    private int headerOffset;
+    private int slotsOffset;
+
+    SlottedPageLayout(Schema schema, int pageSize) {
+        super(schema, pageSize, RecordFormat.variableLength(schema));
+
+        // Storing each record requires 1 bit for the bitmap, a 2-byte slot, and
+        // at least getMinSizeInBytes() bytes for the record itself. As with the
+        // fixed-width layout, we round down to a multiple of 8.
+        int minRecordSize = Math.max(1, recordFormat.getMinSizeInBytes());
+        int recordOverheadInBits = 1 + 8 * (Short.BYTES + minRecordSize);
+        int pageSizeInBits = (pageSize - HEADER_SIZE) * 8;
+        this.numRecordsPerPage = pageSizeInBits / recordOverheadInBits / 8 * 8;
+        this.bitmapSizeInBytes = numRecordsPerPage / 8;
+        this.headerOffset = bitmapSizeInBytes;
+        this.slotsOffset = headerOffset + HEADER_SIZE;
+        assert(slotsOffset + Short.BYTES + recordFormat.getMaxSizeInBytes() <= pageSize);
+    }
+
+    @Override
+    Table.PageFormat getFormat() {
+        return Table.PageFormat.SLOTTED;
+    }
+
+    @Override
+    int getRecordOffset(byte[] page, int entryNum) {
+        return ByteBuffer.wrap(page).getShort(slotsOffset + entryNum * Short.BYTES) & 0xFFFF;
+    }
+
+    @Override
+    byte[] getRecordBytes(BaseTransaction transaction, Page page, int entryNum) {
+        Buffer buf = page.getBuffer(transaction);
+        buf.position(slotsOffset + entryNum * Short.BYTES);
+        int offset = ((buf.get() & 0xFF) << 8) | (buf.get() & 0xFF);
+
+        // We don't know how long the record is until we've read it, so read as
+        // much as it could possibly be and then trim.
+        byte[] bytes = new byte[Math.min(recordFormat.getMaxSizeInBytes(), pageSize - offset)];
+        buf.position(offset);
+        buf.get(bytes);
+        int size = recordFormat.getSizeInBytes(bytes, 0);
+        if (size == bytes.length) {
+            return bytes;
+        }
+        byte[] trimmed = new byte[size];
+        System.arraycopy(bytes, 0, trimmed, 0, size);
+        return trimmed;
+    }
+
+    @Override
+    boolean putRecord(BaseTransaction transaction, Page page, int entryNum, byte[] bytes) {
+        // Read only the header and the slots; the heap is only read if we have
+        // to compact it.
+        Buffer buf = page.getBuffer(transaction);
+        buf.position(headerOffset);
+        int heapStart = buf.getInt();
+        heapStart = heapStart == 0 ? pageSize : heapStart;
+        int storedSlotCount = buf.getInt();
+        int slotCount = Math.max(storedSlotCount, entryNum + 1);
+        int slotsEnd = slotsOffset + slotCount * Short.BYTES;
+        byte[] slotBytes = new byte[slotCount * Short.BYTES];
+        byte[] storedSlots = new byte[storedSlotCount * Short.BYTES];
+        buf.get(storedSlots);
+        System.arraycopy(storedSlots, 0, slotBytes, 0, storedSlots.length);
+        ByteBuffer slots = ByteBuffer.wrap(slotBytes);
+
+        // If the entry already holds a record at least as big as the new one,
+        // overwrite it in place.
+        int oldOffset = getSlot(slots, entryNum);
+        if (oldOffset != 0 && getRecordSize(buf, oldOffset) >= bytes.length) {
+            buf.position(oldOffset);
+            buf.put(bytes);
+            return true;
+        }
+
+        int offset;
+        if (heapStart - slotsEnd >= bytes.length) {
+            offset = heapStart - bytes.length;
+        } else {
+            byte[] heap = new byte[pageSize - heapStart];
+            buf.position(heapStart);
+            buf.get(heap);
+            int liveBytes = 0;
+            for (int i = 0; i < slotCount; ++i) {
+                int slot = getSlot(slots, i);
+                if (i != entryNum && slot != 0) {
+                    liveBytes += recordFormat.getSizeInBytes(heap, slot - heapStart);
+                }
+            }
+            if (pageSize - slotsEnd - liveBytes < bytes.length) {
+                return false;
+            }
+            byte[] compacted = new byte[heap.length];
+            offset = compact(heap, compacted, heapStart, slots, slotCount, entryNum)
+                     - bytes.length;
+            buf.position(heapStart);
+            buf.put(compacted);
+        }
+
+        buf.position(offset);
+        buf.put(bytes);
+        slots.putShort(entryNum * Short.BYTES, (short) offset);
+        buf.position(headerOffset);
+        buf.putInt(offset);
+        buf.putInt(slotCount);
+        buf.put(slotBytes);
+        return true;
+    }
+
+    @Override
+    void removeRecord(BaseTransaction transaction, Page page, int entryNum) {
+        // The record's bytes are reclaimed the next time the heap is compacted.
+        Buffer buf = page.getBuffer(transaction);
+        buf.position(slotsOffset + entryNum * Short.BYTES);
+        buf.put(new byte[Short.BYTES]);
+    }
+
+    // Helpers ///////////////////////////////////////////////////////////////////
+    private int getSlot(ByteBuffer slots, int entryNum) {
+        return slots.getShort(entryNum * Short.BYTES) & 0xFFFF;
+    }
+
+    /** Returns the size of the record at `offset` of the page in `buf`. */
+    private int getRecordSize(Buffer buf, int offset) {
+        byte[] bytes = new byte[Math.min(recordFormat.getMaxSizeInBytes(), pageSize - offset)];
+        buf.position(offset);
+        buf.get(bytes);
+        return recordFormat.getSizeInBytes(bytes, 0);
+    }
+
+    /**
+     * Copies the records of every slot other than `except` from `heap`, the
+     * bytes of the page from `heapStart` on, to the end of `compacted`,
+     * squeezing out the space between them, and clears slot `except`. `slots`
+     * is updated to point at the records where they will be once `compacted`
+     * is written at `heapStart`. Returns the new start of the heap.
+     */
+    private int compact(byte[] heap, byte[] compacted, int heapStart, ByteBuffer slots,
+                        int slotCount, int except) {
+        int start = pageSize;
+        for (int i = 0; i < slotCount; ++i) {
+            int slot = getSlot(slots, i);
+            if (slot == 0 || i == except) {
+                slots.putShort(i * Short.BYTES, (short) 0);
+                continue;
+            }
+            int size = recordFormat.getSizeInBytes(heap, slot - heapStart);
+            start -= size;
+            System.arraycopy(heap, slot - heapStart, compacted, start - heapStart, size);
+            slots.putShort(i * Short.BYTES, (short) start);
+        }
+        return start;
+    }
+}
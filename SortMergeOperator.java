@@ -179,15 +179,15 @@ public class SortMergeOperator extends JoinOperator {
 
         private class LeftRecordComparator implements Comparator<Record> {
             public int compare(Record o1, Record o2) {
-                return o1.getValues().get(SortMergeOperator.this.getLeftColumnIndex()).compareTo(
-                           o2.getValues().get(SortMergeOperator.this.getLeftColumnIndex()));
+                return o1.getValue(SortMergeOperator.this.getLeftColumnIndex()).compareTo(
+                           o2.getValue(SortMergeOperator.this.getLeftColumnIndex()));
             }
         }
 
         private class RightRecordComparator implements Comparator<Record> {
             public int compare(Record o1, Record o2) {
-                return o1.getValues().get(SortMergeOperator.this.getRightColumnIndex()).compareTo(
-                           o2.getValues().get(SortMergeOperator.this.getRightColumnIndex()));
+                return o1.getValue(SortMergeOperator.this.getRightColumnIndex()).compareTo(
+                           o2.getValue(SortMergeOperator.this.getRightColumnIndex()));
             }
         }
 
@@ -198,8 +198,8 @@ public class SortMergeOperator extends JoinOperator {
         */
         private class LR_RecordComparator implements Comparator<Record> {
             public int compare(Record o1, Record o2) {
-                return o1.getValues().get(SortMergeOperator.this.getLeftColumnIndex()).compareTo(
-                           o2.getValues().get(SortMergeOperator.this.getRightColumnIndex()));
+                return o1.getValue(SortMergeOperator.this.getLeftColumnIndex()).compareTo(
+                           o2.getValue(SortMergeOperator.this.getRightColumnIndex()));
             }
         }
     }
@@ -1,7 +1,13 @@
 package edu.berkeley.cs186.database.table;
 
 import java.io.Closeable;
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import edu.berkeley.cs186.database.BaseTransaction;
 import edu.berkeley.cs186.database.DatabaseException;
@@ -13,6 +19,8 @@ import edu.berkeley.cs186.database.concurrency.LockContext;
 import edu.berkeley.cs186.database.concurrency.LockType;
 import edu.berkeley.cs186.database.concurrency.LockUtil;
 import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.index.BPlusTree;
+import edu.berkeley.cs186.database.index.BPlusTreeException;
 import edu.berkeley.cs186.database.io.Page;
 import edu.berkeley.cs186.database.io.PageAllocator;
 import edu.berkeley.cs186.database.table.stats.TableStats;
@@ -52,6 +60,24 @@ import edu.berkeley.cs186.database.table.stats.TableStats;
  *   // Don't forget to close the table.
  *   t.close();
  *
+ * Every table also keeps a FreeSpaceMap in a second file (e.g. "t.table.fsm")
+ * which records the number of records in the table and which data pages have
+ * room for more records. This is what lets us reload a table without reading
+ * all of its data pages; see FreeSpaceMap for details. Finally, every table
+ * keeps a ZoneMap in a third file (e.g. "t.table.zm") which summarizes the
+ * range of values of each column on each data page, so that scans with
+ * predicates can skip pages; see ZoneMap for details.
+ *
+ * # Concurrency
+ * A table can be read and modified by many threads at once. Rather than
+ * locking the whole table, each method latches just the data page it reads
+ * or writes (see PageLatches), so operations on different pages proceed in
+ * parallel. The set of pages with free space is a concurrent set, and the
+ * table's statistics and record count are updated under a lock of their own
+ * once the page is unlatched. Scans read each page latched too, through
+ * copyPageBytes. The only table-wide lock is held exclusively just while the
+ * statistics are rebuilt; see mutationGuard.
+ *
  * # Storage Format
  * Now, we discuss how tables serialize their data into files.
  *
@@ -93,11 +119,39 @@ import edu.berkeley.cs186.database.table.stats.TableStats;
  *
  *  When we add a record to a table, we add it to the very first free slot in
  *  the table. See addRecord for more information.
+ *
+ * The layout described above is the FIXED_WIDTH PageFormat, which tables use
+ * unless they are created with a different one. The header page records the
+ * format after the schema. Every format begins its data pages with a bitmap
+ * like the one above, but may lay out the rest of the page differently; see
+ * PageFormat.
  */
 public class Table implements Closeable {
     public static final String FILENAME_PREFIX = "db";
     public static final String FILENAME_EXTENSION = ".table";
 
+    /**
+     * The ways in which the data pages of a table can be laid out. A table's
+     * format is chosen when it is created and never changes.
+     */
+    public enum PageFormat {
+        // Fixed-width records packed after the bitmap, as described above.
+        FIXED_WIDTH,
+        // Variable-length records, with strings stored without their padding,
+        // in a slotted page; see SlottedPageLayout. Tables with long string
+        // types that mostly hold short strings fit many more records per page
+        // this way.
+        SLOTTED,
+        // Fixed-width records stored column by column, each column run-length
+        // or dictionary encoded; see CompressedPageLayout. Meant for cold
+        // tables, which are scanned much more often than they are modified.
+        COMPRESSED,
+        // Fixed-width records stored in a minipage per column; see
+        // PaxPageLayout. Meant for analytic tables, whose scans typically only
+        // read a few of their columns.
+        PAX
+    }
+
     // The name of the database.
     private String name;
 
@@ -110,20 +164,85 @@ public class Table implements Closeable {
     // The allocator used to persist the database.
     private PageAllocator allocator;
 
+    // How records are laid out in the data pages.
+    private PageLayout layout;
+
     // The size (in bytes) of the bitmap found at the beginning of each data page.
     private int bitmapSizeInBytes;
 
     // The number of records on each data page.
     private int numRecordsPerPage;
 
-    // Statistics about the contents of the database.
-    private TableStats stats;
+    // The histograms of the table. They are saved in freeSpaceMap whenever
+    // they are built, so a loaded table reads them rather than recomputing
+    // them; see rebuildStatistics. getStats combines them with numRecords and
+    // the number of data pages, so modifications never update them. stats and
+    // statsBuckets are only replaced with the write lock of mutationGuard
+    // held.
+    private volatile TableStats stats;
+
+    // The number of histogram buckets stats was last built with, or 0 if its
+    // histograms have not been built.
+    private volatile int statsBuckets;
+
+    // The number of records added, updated, or deleted since the histograms
+    // were last built. Persisted in freeSpaceMap along with the histograms so
+    // that buildStatistics can skip rebuilding histograms that are still
+    // current, even after the table is reloaded. Like numRecords, it is a
+    // LongAdder so that concurrent modifications don't contend on it; both
+    // are only written to freeSpaceMap by saveCounts.
+    private final LongAdder numModifications = new LongAdder();
+
+    // The persistent record of numRecords and freePageNums.
+    private FreeSpaceMap freeSpaceMap;
+
+    // The ranges of values on each data page.
+    private ZoneMap zoneMap;
 
     // The page numbers of all allocated pages which have room for more records.
-    private TreeSet<Integer> freePageNums;
+    // A page is only added to or removed from the set with its write latch
+    // held, except when it is first allocated.
+    private ConcurrentSkipListSet<Integer> freePageNums;
+
+    // The number of records on each data page, for the pages whose records we
+    // have counted. Kept up to date by addRecord and deleteRecord so that
+    // neither has to recount a bitmap. The entry of a page is only read or
+    // written with the page latched.
+    private PageOccupancy pageOccupancy;
+
+    // The bitmap that addRecord reads a page's bitmap into, as bytes and as
+    // words (see PageBitmap), per thread, so that inserting a record doesn't
+    // allocate either.
+    private ThreadLocal<byte[]> scratchBitmap;
+    private ThreadLocal<long[]> scratchWords;
 
     // The number of records in the table.
-    private long numRecords;
+    private final LongAdder numRecords = new LongAdder();
+
+    // The latches of the data pages; see PageLatches. Every method that reads
+    // or writes a data page latches it, so different pages can be read and
+    // written concurrently.
+    private PageLatches latches;
+
+    // Keeps the statistics from being rebuilt in the middle of a modification.
+    // Every method that modifies records holds the read lock from before it
+    // latches the first page it modifies until after it has counted its
+    // changes (see recordChanges). rebuildStatistics and
+    // buildStatistics hold the write lock while they read the table, so that
+    // every modification is either seen by their scan or applied to the
+    // statistics they build, but never both. The read lock is always
+    // acquired before any page latch.
+    private final ReentrantReadWriteLock mutationGuard = new ReentrantReadWriteLock();
+
+    // Serializes calls to compact; see drainPage.
+    private final Object compactionLock = new Object();
+
+    // The indices on the columns of the table, by column name; see addIndex.
+    private final Map<String, BPlusTree> indices = new ConcurrentHashMap<>();
+
+    // The number of free pages that concurrent inserters are spread across;
+    // see latchFreePage.
+    private int numInsertTargets;
 
     // The lock context.
     private LockContext lockContext;
@@ -135,18 +254,38 @@ public class Table implements Closeable {
      */
     public Table(String name, Schema schema, String filename, LockContext lockContext,
                  BaseTransaction transaction) {
+        this(name, schema, filename, lockContext, transaction, PageFormat.FIXED_WIDTH);
+    }
+
+    /**
+     * Construct a brand new table named `name` with schema `schema` persisted in
+     * file `filename`, whose data pages are laid out in format `format`.
+     */
+    public Table(String name, Schema schema, String filename, LockContext lockContext,
+                 BaseTransaction transaction, PageFormat format) {
         this.name = name;
         this.filename = filename;
         this.schema = schema;
         this.allocator = new PageAllocator(lockContext, filename, true, transaction);
-        this.bitmapSizeInBytes = computeBitmapSizeInBytes(Page.pageSize, schema);
-        numRecordsPerPage = computeNumRecordsPerPage(Page.pageSize, schema);
+        this.layout = PageLayout.create(format, schema, Page.pageSize);
+        this.bitmapSizeInBytes = layout.getBitmapSizeInBytes();
+        numRecordsPerPage = layout.getNumRecordsPerPage();
         this.stats = new TableStats(this.schema);
-        this.freePageNums = new TreeSet<Integer>();
-        this.numRecords = 0;
+        this.statsBuckets = 0;
+        this.freePageNums = new ConcurrentSkipListSet<Integer>();
+        this.pageOccupancy = new PageOccupancy();
+        initScratchBitmaps();
+        this.latches = new PageLatches();
+        this.numInsertTargets = Runtime.getRuntime().availableProcessors();
         this.lockContext = lockContext;
 
-        writeSchemaToHeaderPage(transaction, allocator, schema);
+        writeSchemaToHeaderPage(transaction, allocator, schema, format);
+        // The free space map is only marked populated once the table is
+        // closed and its counts are saved; see close.
+        this.freeSpaceMap = new FreeSpaceMap(lockContext, filename, true, transaction);
+        this.freeSpaceMap.setStatistics(transaction, 0, 0, stats);
+        this.zoneMap = new ZoneMap(lockContext, filename, schema, latches, true, transaction);
+        this.zoneMap.markPopulated(transaction);
     }
 
     /**
@@ -159,37 +298,51 @@ public class Table implements Closeable {
         this.filename = filename;
         this.allocator = new PageAllocator(lockContext, filename, false, transaction);
         this.schema = readSchemaFromHeaderPage(transaction, this.allocator);
-        this.bitmapSizeInBytes = computeBitmapSizeInBytes(Page.pageSize, this.schema);
-        this.numRecordsPerPage = computeNumRecordsPerPage(Page.pageSize, this.schema);
-
-        // We compute the stats, free pages, and number of records naively. We
-        // iterate through every single data page of the file, and for each data
-        // data page, we use the bitmap to read every single record.
-        this.stats = new TableStats(this.schema);
-        this.freePageNums = new TreeSet<Integer>();
-        this.numRecords = 0;
-
-        Iterator<Page> iter = this.allocator.iterator(transaction);
-        iter.next(); // Skip the header page.
-        while(iter.hasNext()) {
-            Page page = iter.next();
-            byte[] bitmap = getBitMap(transaction, page);
-
-            for (short i = 0; i < numRecordsPerPage; ++i) {
-                if (Bits.getBit(bitmap, i) == Bits.Bit.ONE) {
-                    Record r = getRecord(transaction, new RecordId(page.getPageNum(), i));
-                    stats.addRecord(r);
-                    numRecords++;
-                }
-            }
-
-            if (numRecordsOnPage(transaction, page) != numRecordsPerPage) {
-                freePageNums.add(page.getPageNum());
-            }
+        this.layout = readPageLayoutFromHeaderPage(transaction, this.allocator, this.schema);
+        this.bitmapSizeInBytes = layout.getBitmapSizeInBytes();
+        this.numRecordsPerPage = layout.getNumRecordsPerPage();
+
+        // The free pages and number of records are read from the free space
+        // map. Tables written before free space maps existed, whose map was
+        // lost, or which were not closed (so their counts were never saved)
+        // get one built for them from their bitmaps, which requires a pass
+        // over every data page. Such a table may also have been modified since
+        // its histograms were built without the modifications being saved, so
+        // its histograms are assumed to be out of date.
+        this.pageOccupancy = new PageOccupancy();
+        initScratchBitmaps();
+        this.latches = new PageLatches();
+        this.numInsertTargets = Runtime.getRuntime().availableProcessors();
+        this.freeSpaceMap = new FreeSpaceMap(lockContext, filename, false, transaction);
+        long savedModifications = freeSpaceMap.getNumModifications(transaction);
+        if (freeSpaceMap.isNew(transaction)) {
+            rebuildFreeSpaceMap(transaction);
+            savedModifications = Math.max(savedModifications, 1);
+        }
+        this.freePageNums = new ConcurrentSkipListSet<>(freeSpaceMap.getFreePageNums(transaction));
+        this.numRecords.add(freeSpaceMap.getNumRecords(transaction));
+        this.numModifications.add(savedModifications);
+        this.stats = freeSpaceMap.getStatistics(transaction, schema, numRecords.sum());
+        this.statsBuckets = freeSpaceMap.getHistogramBuckets(transaction);
+
+        // Likewise, tables written before zone maps existed get one built for
+        // them, which requires reading every record, but only once.
+        this.zoneMap = new ZoneMap(lockContext, filename, schema, latches, false, transaction);
+        if (zoneMap.isNew(transaction)) {
+            rebuildZoneMap(transaction);
         }
 
         this.lockContext = lockContext;
 
+        // Statistics saved in a different format than the current one have to
+        // be recomputed, which requires reading every record, but only once.
+        if (stats == null) {
+            rebuildStatistics(transaction);
+        }
+
+        // Until the table is closed, the counts saved in the free space map
+        // fall behind numRecords and numModifications.
+        freeSpaceMap.markUnpopulated(transaction);
     }
 
     // Accessors /////////////////////////////////////////////////////////////////
@@ -217,12 +370,26 @@ public class Table implements Closeable {
         return numRecordsPerPage;
     }
 
+    public PageFormat getPageFormat() {
+        return layout.getFormat();
+    }
+
+    PageLayout getLayout() {
+        return layout;
+    }
+
+    ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+
     public TableStats getStats() {
-        return stats;
+        TableStats current = stats;
+        return new TableStats(schema, numRecords.sum(), getNumDataPages(),
+                              current.getHistograms());
     }
 
     public long getNumRecords() {
-        return numRecords;
+        return numRecords.sum();
     }
 
     public int getNumDataPages() {
@@ -230,12 +397,35 @@ public class Table implements Closeable {
         return allocator.getNumPages() - 1;
     }
 
+    /**
+     * Returns a copy of all of `page`, one of this table's data pages, read
+     * with the page latched, so that a concurrent modification of the page is
+     * never seen half done.
+     */
+    byte[] copyPageBytes(BaseTransaction transaction, Page page) {
+        byte[] bytes = new byte[Page.pageSize];
+        Lock latch = latches.readLatch(page.getPageNum());
+        latch.lock();
+        try {
+            page.getBuffer(transaction).get(bytes);
+        } finally {
+            latch.unlock();
+        }
+        return bytes;
+    }
+
     // TODO(mwhittaker): This should not be public. Right now, other code
     // elsewhere reads the bitmap of tables, so we're forced to make it public.
     // We should refactor to avoid this.
     public byte[] getBitMap(BaseTransaction transaction, Page page) {
         byte[] bytes = new byte[bitmapSizeInBytes];
-        page.getBuffer(transaction).get(bytes);
+        Lock latch = latches.readLatch(page.getPageNum());
+        latch.lock();
+        try {
+            page.getBuffer(transaction).get(bytes);
+        } finally {
+            latch.unlock();
+        }
         return bytes;
     }
 
@@ -254,18 +444,88 @@ public class Table implements Closeable {
     // Modifiers /////////////////////////////////////////////////////////////////
     /**
      * buildStatistics builds histograms on each of the columns of a table. Running
-     * it multiple times refreshes the statistics
+     * it multiple times refreshes the statistics, although histograms built with
+     * the same number of buckets are not rebuilt unless the table has been
+     * modified since.
      */
     public TableStats buildStatistics(BaseTransaction transaction, int buckets) {
-        this.stats.refreshHistograms(transaction, buckets, this);
-        return this.stats;
+        Lock guard = mutationGuard.writeLock();
+        guard.lock();
+        try {
+            // No modification can run while we hold the write lock, so the
+            // statistics and counters can't change under us.
+            TableStats current = stats;
+            boolean stale = statsBuckets != buckets || numModifications.sum() != 0;
+            if (current == null) {
+                current = scanStatistics(transaction);
+                stale = true;
+            }
+            if (stale) {
+                current.refreshHistograms(transaction, buckets, this);
+                freeSpaceMap.setStatistics(transaction, buckets, getNumDataPages(), current);
+                stats = current;
+                statsBuckets = buckets;
+                numModifications.reset();
+                saveCounts(transaction);
+            }
+            return getStats();
+        } finally {
+            guard.unlock();
+        }
+    }
+
+    /**
+     * rebuildStatistics computes the statistics of this table from scratch by
+     * reading every one of its records, saves them, and returns them. Loaded
+     * tables only call it if their saved statistics can't be read, e.g.
+     * because they were saved in an older format. If the table's histograms
+     * had been built, they are rebuilt too, with the same number of buckets.
+     */
+    public TableStats rebuildStatistics(BaseTransaction transaction) {
+        Lock guard = mutationGuard.writeLock();
+        guard.lock();
+        try {
+            int buckets = statsBuckets;
+            TableStats newStats = scanStatistics(transaction);
+            if (buckets > 0) {
+                newStats.refreshHistograms(transaction, buckets, this);
+            }
+            freeSpaceMap.setStatistics(transaction, buckets, getNumDataPages(), newStats);
+            stats = newStats;
+            numModifications.reset();
+            numRecords.reset();
+            numRecords.add(newStats.getNumRecords());
+            saveCounts(transaction);
+            return getStats();
+        } finally {
+            guard.unlock();
+        }
+    }
+
+    /**
+     * Returns new statistics, without histograms, of every record of the
+     * table. Latches each page as it reads it.
+     */
+    private TableStats scanStatistics(BaseTransaction transaction) {
+        TableStats newStats = new TableStats(this.schema);
+        Iterator<Record> iter = iterator(transaction);
+        while (iter.hasNext()) {
+            newStats.addRecord(iter.next());
+        }
+        return newStats;
     }
 
     // Modifiers /////////////////////////////////////////////////////////////////
-    private synchronized void insertRecord(BaseTransaction transaction, Page page, int entryNum,
-                                           Record record) {
-        int offset = bitmapSizeInBytes + (entryNum * schema.getSizeInBytes());
-        page.getBuffer(transaction).position(offset).put(record.toBytes(schema));
+    /**
+     * Writes `record` into entry `entryNum` of `page`, returning false if there
+     * isn't room for it on the page. Only formats with variable-length records
+     * can run out of room before they run out of entries. The page must be
+     * write latched.
+     */
+    private boolean insertRecord(BaseTransaction transaction, Page page, int entryNum,
+                                 Record record) {
+        return layout.putRecord(transaction, page, entryNum,
+                                layout.getRecordFormat().toBytes(record));
     }
 
     /**
@@ -275,79 +535,347 @@ public class Table implements Closeable {
      * page (if one exists, otherwise one is allocated). For example, if the
      * first free page has bitmap 0b11101000, then the record is inserted into
      * the page with index 3 and the bitmap is updated to 0b11111000.
+     *
+     * If another thread is already inserting into the first free page, the
+     * record is added to the next free page instead, and so on; see
+     * latchFreePage.
+     *
+     * In formats with variable-length records, a page can run out of room
+     * before it runs out of free slots. Such a page is treated as full until a
+     * record is deleted from it.
      */
-    public synchronized RecordId addRecord(BaseTransaction transaction,
-                                           List<DataBox> values) throws DatabaseException {
-        Record record = schema.verify(values);
+    public RecordId addRecord(BaseTransaction transaction,
+                              List<DataBox> values) throws DatabaseException {
+        Lock guard = mutationGuard.readLock();
+        guard.lock();
+        try {
+            Record record = schema.verify(values);
+            byte[] bitmap = scratchBitmap.get();
+            long[] words = scratchWords.get();
+
+            // Get a free page. The free space map is only a hint (e.g. after a
+            // crash it may claim a full page is free), and another thread may fill
+            // the page before we latch it, so we keep looking until we find a page
+            // that really has a free slot.
+            RecordId rid = null;
+            while (rid == null) {
+                int pageNum = latchFreePage(transaction);
+                try {
+                    if (!freePageNums.contains(pageNum)) {
+                        continue;
+                    }
+                    Page page = allocator.fetchPage(transaction, pageNum);
+
+                    // Find the first empty slot in the bitmap, and insert the record.
+                    page.getBuffer(transaction).get(bitmap);
+                    PageBitmap.toWords(bitmap, words);
+                    int entryNum = PageBitmap.nextClearBit(words, 0, numRecordsPerPage);
+                    if (entryNum == -1 || !insertRecord(transaction, page, entryNum, record)) {
+                        freePageNums.remove(pageNum);
+                        freeSpaceMap.setFree(transaction, pageNum, false);
+                        if (entryNum == -1) {
+                            setOccupancy(pageNum, numRecordsPerPage);
+                        }
+                        continue;
+                    }
+                    int occupancy = getOccupancy(transaction, page) + 1;
+
+                    // Update the bitmap.
+                    Bits.setBit(page.getBuffer(transaction), entryNum, Bits.Bit.ONE);
+
+                    // Update the metadata of the page.
+                    zoneMap.addRecords(transaction, pageNum, Collections.singletonList(record));
+                    setOccupancy(pageNum, occupancy);
+                    if (occupancy == numRecordsPerPage) {
+                        freePageNums.remove(pageNum);
+                        freeSpaceMap.setFree(transaction, pageNum, false);
+                    }
+                    rid = new RecordId(pageNum, (short) entryNum);
+                } finally {
+                    unlatchFreePage(pageNum);
+                }
+            }
 
-        // Get a free page, allocating a new one if necessary.
-        if (freePageNums.isEmpty()) {
-            freePageNums.add(allocator.allocPage(transaction));
+            recordChanges(1, 0);
+            return rid;
+        } finally {
+            guard.unlock();
         }
-        Page page = allocator.fetchPage(transaction, freePageNums.first());
+    }
 
-        // Find the first empty slot in the bitmap.
-        // entry number of the first free slot and store it in entryNum; and (2) we
-        // count the total number of entries on this page.
-        byte[] bitmap = getBitMap(transaction, page);
-        int entryNum = 0;
-        for (; entryNum < numRecordsPerPage; ++entryNum) {
-            if (Bits.getBit(bitmap, entryNum) == Bits.Bit.ZERO) {
-                break;
+    /**
+     * addRecords adds every record in `values` to this table and returns the
+     * record ids of the newly added records in order. The records end up
+     * exactly where calling addRecord on each of them would put them, but
+     * every page is filled completely before we move on to the next one, and
+     * each page is fetched, latched, its bitmap read and written, and its
+     * records written (see PageLayout.putRecords) only once.
+     *
+     * If some record fails to verify, the records before it remain in the
+     * table and the exception is rethrown.
+     */
+    public List<RecordId> addRecords(BaseTransaction transaction,
+                                     Iterator<List<DataBox>> values) throws DatabaseException {
+        Lock guard = mutationGuard.readLock();
+        guard.lock();
+        try {
+            List<RecordId> rids = new ArrayList<>();
+            int[] entryNums = new int[numRecordsPerPage];
+            byte[] bitmap = new byte[bitmapSizeInBytes];
+            long[] words = PageBitmap.newWords(bitmapSizeInBytes);
+
+            // Records that didn't fit on the last page we tried, in order, and the
+            // exception thrown by the first record that failed to verify, if any.
+            Deque<Record> pending = new ArrayDeque<>();
+            DatabaseException error = null;
+            while (!pending.isEmpty() || (error == null && values.hasNext())) {
+                int pageNum = latchFreePage(transaction);
+                List<Record> batch = new ArrayList<>();
+                int written = 0;
+                try {
+                    if (!freePageNums.contains(pageNum)) {
+                        continue;
+                    }
+                    Page page = allocator.fetchPage(transaction, pageNum);
+                    int occupancy = getOccupancy(transaction, page);
+                    Buffer buf = page.getBuffer(transaction);
+                    buf.get(bitmap);
+                    PageBitmap.toWords(bitmap, words);
+
+                    // Take a record for every free slot of the page.
+                    int entryNum = PageBitmap.nextClearBit(words, 0, numRecordsPerPage);
+                    while (entryNum != -1 && (!pending.isEmpty() || (error == null && values.hasNext()))) {
+                        Record record;
+                        if (!pending.isEmpty()) {
+                            record = pending.pollFirst();
+                        } else {
+                            try {
+                                record = schema.verify(values.next());
+                            } catch (DatabaseException e) {
+                                error = e;
+                                break;
+                            }
+                        }
+                        entryNums[batch.size()] = entryNum;
+                        batch.add(record);
+                        entryNum = PageBitmap.nextClearBit(words, entryNum + 1, numRecordsPerPage);
+                    }
+
+                    // Write as many of them as there's room for, and then the bitmap.
+                    byte[][] bytes = new byte[batch.size()][];
+                    for (int i = 0; i < batch.size(); ++i) {
+                        bytes[i] = layout.getRecordFormat().toBytes(batch.get(i));
+                    }
+                    written = layout.putRecords(transaction, page, entryNums, bytes, batch.size());
+                    for (int i = 0; i < written; ++i) {
+                        PageBitmap.setBit(words, entryNums[i]);
+                        rids.add(new RecordId(pageNum, (short) entryNums[i]));
+                    }
+                    zoneMap.addRecords(transaction, pageNum, batch.subList(0, written));
+                    for (int i = batch.size() - 1; i >= written; --i) {
+                        pending.addFirst(batch.get(i));
+                    }
+                    occupancy += written;
+
+                    PageBitmap.fromWords(words, bitmap);
+                    buf.position(0);
+                    buf.put(bitmap);
+                    setOccupancy(pageNum, occupancy);
+                    if (written < batch.size() || entryNum == -1) {
+                        freePageNums.remove(pageNum);
+                        freeSpaceMap.setFree(transaction, pageNum, false);
+                    }
+                } finally {
+                    unlatchFreePage(pageNum);
+                }
+                recordChanges(written, 0);
+            }
+            if (error != null) {
+                throw error;
             }
+            return rids;
+        } finally {
+            guard.unlock();
         }
-        assert(entryNum < numRecordsPerPage);
+    }
 
-        // Insert the record and update the bitmap.
-        insertRecord(transaction, page, entryNum, record);
-        Bits.setBit(page.getBuffer(transaction), entryNum, Bits.Bit.ONE);
+    /**
+     * bulkLoad appends every record in `records` to this table and returns the
+     * number of records added. It is meant for the initial load of a large
+     * table, and does as little work per record as it can: the records are
+     * written to brand new data pages at the end of the table, filling each
+     * page from entry 0 before allocating the next, so every page is
+     * allocated, latched, and written (see PageLayout.putRecords) exactly
+     * once, its bitmap is written in one go without being read first, and
+     * stats are updated once per page in the same pass.
+     *
+     * The new pages are full, so they never enter freePageNums; only the last
+     * one, if it has room left, is added to it. Free space on the pages the
+     * table already had is not reused. Record ids are not returned; the
+     * records of each new page are in entries 0, 1, ..., in the order they
+     * were loaded.
+     *
+     * If some record fails to verify, the records before it remain in the
+     * table and the exception is rethrown.
+     */
+    public long bulkLoad(BaseTransaction transaction,
+                         Iterator<Record> records) throws DatabaseException {
+        Lock guard = mutationGuard.readLock();
+        guard.lock();
+        try {
+            long numLoaded = 0;
+            int[] entryNums = new int[numRecordsPerPage];
+            for (int i = 0; i < numRecordsPerPage; ++i) {
+                entryNums[i] = i;
+            }
+            byte[][] bytes = new byte[numRecordsPerPage][];
+            byte[] bitmap = new byte[bitmapSizeInBytes];
+            long[] words = PageBitmap.newWords(bitmapSizeInBytes);
+
+            // Records that didn't fit on the last page, in order, and the
+            // exception thrown by the first record that failed to verify, if any.
+            Deque<Record> pending = new ArrayDeque<>();
+            DatabaseException error = null;
+            while (!pending.isEmpty() || (error == null && records.hasNext())) {
+                // Take a page's worth of records.
+                List<Record> batch = new ArrayList<>(numRecordsPerPage);
+                while (batch.size() < numRecordsPerPage &&
+                        (!pending.isEmpty() || (error == null && records.hasNext()))) {
+                    Record record;
+                    if (!pending.isEmpty()) {
+                        record = pending.pollFirst();
+                    } else {
+                        try {
+                            record = schema.verify(records.next().getValues());
+                        } catch (DatabaseException e) {
+                            error = e;
+                            break;
+                        }
+                    }
+                    bytes[batch.size()] = layout.getRecordFormat().toBytes(record);
+                    batch.add(record);
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
 
-        // Update the metadata.
-        stats.addRecord(record);
-        if (numRecordsOnPage(transaction, page) == numRecordsPerPage) {
-            freePageNums.pollFirst();
+                // Write as many of them as there's room for to a new page, and
+                // then its bitmap.
+                int pageNum;
+                synchronized (allocator) {
+                    pageNum = allocator.allocPage(transaction);
+                    freeSpaceMap.setNumDataPages(transaction, getNumDataPages());
+                }
+                int written;
+                Lock latch = latches.writeLatch(pageNum);
+                latch.lock();
+                try {
+                    Page page = allocator.fetchPage(transaction, pageNum);
+                    written = layout.putRecords(transaction, page, entryNums, bytes, batch.size());
+                    Arrays.fill(words, 0);
+                    for (int i = 0; i < written; ++i) {
+                        PageBitmap.setBit(words, i);
+                    }
+                    PageBitmap.fromWords(words, bitmap);
+                    Buffer buf = page.getBuffer(transaction);
+                    buf.position(0);
+                    buf.put(bitmap);
+
+                    zoneMap.addRecords(transaction, pageNum, batch.subList(0, written));
+                    setOccupancy(pageNum, written);
+                    if (written == batch.size() && written < numRecordsPerPage) {
+                        freeSpaceMap.setFree(transaction, pageNum, true);
+                        freePageNums.add(pageNum);
+                    }
+                } finally {
+                    latch.unlock();
+                }
+                for (int i = batch.size() - 1; i >= written; --i) {
+                    pending.addFirst(batch.get(i));
+                }
+                recordChanges(written, 0);
+                numLoaded += written;
+            }
+            if (error != null) {
+                throw error;
+            }
+            return numLoaded;
+        } finally {
+            guard.unlock();
         }
-        numRecords++;
+    }
 
-        return new RecordId(page.getPageNum(), (short) entryNum);
+    /**
+     * Writes a copy of this table, in format `format`, to a new table named
+     * `name` persisted in `filename`, and returns the new table. Records are
+     * copied in order with bulkLoad, but their record ids are not preserved.
+     * This is how an existing table is converted to a different PageFormat
+     * offline (e.g. a cold table to COMPRESSED): copy it, then swap the new
+     * table in for the old one.
+     */
+    public Table copy(String name, String filename, LockContext lockContext,
+                      BaseTransaction transaction,
+                      PageFormat format) throws DatabaseException {
+        Table table = new Table(name, schema, filename, lockContext, transaction, format);
+        table.bulkLoad(transaction, iterator(transaction));
+        return table;
     }
 
     /**
      * Retrieves a record from the table, throwing an exception if no such record
      * exists.
      */
-    public synchronized Record getRecord(BaseTransaction transaction,
-                                         RecordId rid) throws DatabaseException {
-        validateRecordId(rid);
-        Page page = allocator.fetchPage(transaction, rid.getPageNum());
-        byte[] bitmap = getBitMap(transaction, page);
-        if (Bits.getBit(bitmap, rid.getEntryNum()) == Bits.Bit.ZERO) {
-            String msg = String.format("Record %s does not exist.", rid);
-            throw new DatabaseException(msg);
-        }
+    public Record getRecord(BaseTransaction transaction, RecordId rid) throws DatabaseException {
+        return layout.getRecordFormat().fromBytes(getRecordBytes(transaction, rid), 0);
+    }
 
-        int offset = bitmapSizeInBytes + (rid.getEntryNum() * schema.getSizeInBytes());
-        Buffer buf = page.getBuffer(transaction);
-        buf.position(offset);
-        return Record.fromBytes(buf, schema);
+    /**
+     * Same as getRecord, except that the returned record is a RecordView over
+     * a copy of the record's bytes, so only the values that are actually used
+     * get decoded.
+     */
+    public Record getRecordView(BaseTransaction transaction,
+                                RecordId rid) throws DatabaseException {
+        return new RecordView(getRecordBytes(transaction, rid), 0, layout.getRecordFormat(), null);
     }
 
     /**
      * Overwrites an existing record with new values and returns the existing
      * record. stats is updated accordingly. An exception is thrown if rid does
-     * not correspond to an existing record in the table.
+     * not correspond to an existing record in the table, or if the new record
+     * is longer than the old one and there isn't room for it on the old one's
+     * page (which can only happen in formats with variable-length records).
      */
-    public synchronized Record updateRecord(BaseTransaction transaction, List<DataBox> values,
-                                            RecordId rid) throws DatabaseException {
-        validateRecordId(rid);
-        Record newRecord = schema.verify(values);
-        Record oldRecord = getRecord(transaction, rid);
+    public Record updateRecord(BaseTransaction transaction, List<DataBox> values,
+                               RecordId rid) throws DatabaseException {
+        Lock guard = mutationGuard.readLock();
+        guard.lock();
+        try {
+            validateRecordId(rid);
+            Record newRecord = schema.verify(values);
+            Record oldRecord;
+
+            Lock latch = latches.writeLatch(rid.getPageNum());
+            latch.lock();
+            try {
+                oldRecord = getRecord(transaction, rid);
+                Page page = allocator.fetchPage(transaction, rid.getPageNum());
+                if (!insertRecord(transaction, page, rid.getEntryNum(), newRecord)) {
+                    String msg = String.format("There is no room on page %d for the new record %s.",
+                                               rid.getPageNum(), newRecord);
+                    throw new DatabaseException(msg);
+                }
+                zoneMap.addRecords(transaction, rid.getPageNum(),
+                                   Collections.singletonList(newRecord));
+            } finally {
+                latch.unlock();
+            }
 
-        Page page = allocator.fetchPage(transaction, rid.getPageNum());
-        insertRecord(transaction, page, rid.getEntryNum(), newRecord);
-        this.stats.removeRecord(oldRecord);
-        this.stats.addRecord(newRecord);
-        return oldRecord;
+            recordChanges(1, 1);
+            return oldRecord;
+        } finally {
+            guard.unlock();
+        }
     }
 
     /**
@@ -355,36 +883,159 @@ public class Table implements Closeable {
      * stats, freePageNums, and numRecords as necessary. An exception is thrown
      * if rid does not correspond to an existing record in the table.
      */
-    public synchronized Record deleteRecord(BaseTransaction transaction,
-                                            RecordId rid) throws DatabaseException {
-        validateRecordId(rid);
-        Page page = allocator.fetchPage(transaction, rid.getPageNum());
-        Record record = getRecord(transaction, rid);
-        Bits.setBit(page.getBuffer(transaction), rid.getEntryNum(), Bits.Bit.ZERO);
+    public Record deleteRecord(BaseTransaction transaction,
+                               RecordId rid) throws DatabaseException {
+        Lock guard = mutationGuard.readLock();
+        guard.lock();
+        try {
+            validateRecordId(rid);
+            int pageNum = rid.getPageNum();
+            Record record;
+
+            Lock latch = latches.writeLatch(pageNum);
+            latch.lock();
+            try {
+                Page page = allocator.fetchPage(transaction, pageNum);
+                record = getRecord(transaction, rid);
+                int occupancy = getOccupancy(transaction, page) - 1;
+                Bits.setBit(page.getBuffer(transaction), rid.getEntryNum(), Bits.Bit.ZERO);
+                layout.removeRecord(transaction, page, rid.getEntryNum());
+
+                if (occupancy == 0) {
+                    zoneMap.clear(transaction, pageNum);
+                }
+                setOccupancy(pageNum, occupancy);
+                if (!freePageNums.contains(pageNum)) {
+                    freePageNums.add(pageNum);
+                    freeSpaceMap.setFree(transaction, pageNum, true);
+                }
+            } finally {
+                latch.unlock();
+            }
 
-        stats.removeRecord(record);
-        if(numRecordsOnPage(transaction, page) == numRecordsPerPage - 1) {
-            freePageNums.add(page.getPageNum());
+            recordChanges(0, 1);
+            return record;
+        } finally {
+            guard.unlock();
         }
-        numRecords--;
-
-        return record;
     }
 
     /**
      * Frees all empty pages used by the table.
      */
-    public synchronized void cleanup(BaseTransaction transaction) throws DatabaseException {
-        for (Integer pageNum : freePageNums) {
-            allocator.freePage(transaction, pageNum);
+    public void cleanup(BaseTransaction transaction) throws DatabaseException {
+        Lock guard = mutationGuard.readLock();
+        guard.lock();
+        try {
+            for (Integer pageNum : freePageNums) {
+                Lock latch = latches.writeLatch(pageNum);
+                latch.lock();
+                try {
+                    if (freePageNums.remove(pageNum)) {
+                        synchronized (allocator) {
+                            allocator.freePage(transaction, pageNum);
+                            freeSpaceMap.setNumDataPages(transaction, getNumDataPages());
+                        }
+                        freeSpaceMap.setFree(transaction, pageNum, false);
+                        zoneMap.clear(transaction, pageNum);
+                        layout.forgetPage(pageNum);
+                        setOccupancy(pageNum, -1);
+                    }
+                } finally {
+                    latch.unlock();
+                }
+            }
+        } finally {
+            guard.unlock();
+        }
+    }
+
+    /**
+     * Registers `index` as the index on column `columnName` of this table, so
+     * that compact can update it when it moves records. Whoever creates an
+     * index on the table must register it here, and unregister it with
+     * removeIndex when the index is dropped.
+     */
+    public void addIndex(String columnName, BPlusTree index) throws DatabaseException {
+        if (!schema.getFieldNames().contains(columnName)) {
+            String msg = String.format("Table %s has no column %s to index.", name, columnName);
+            throw new DatabaseException(msg);
         }
-        freePageNums.clear();
+        indices.put(columnName, index);
+    }
+
+    /** Unregisters the index on column `columnName`, if there is one. */
+    public void removeIndex(String columnName) {
+        indices.remove(columnName);
     }
 
+    /**
+     * compact moves the records of sparse data pages (pages at most
+     * `maxFillFactor` full) into free slots on lower-numbered pages and frees
+     * the pages it empties, so that scans after heavy deletes touch fewer
+     * pages. It returns the number of pages freed.
+     *
+     * Moving a record changes its record id. The entry of the record in every
+     * index registered with addIndex is moved to its new record id along with
+     * it. Other transactions may hold record ids of the table or be scanning
+     * it, though, so compact locks the whole table in X mode for
+     * `transaction` first, and they finish before it starts.
+     *
+     * Pages are drained one at a time, highest page number first, latching
+     * only the pages being read or written at any moment. It stops when there
+     * are no free slots left on lower-numbered pages.
+     */
+    public int compact(BaseTransaction transaction, float maxFillFactor) throws DatabaseException {
+        LockUtil.requestLocks(transaction, lockContext, LockType.X);
+
+        List<Integer> candidates = new ArrayList<>(freePageNums.descendingSet());
+        int freed = 0;
+        for (int pageNum : candidates) {
+            int result = drainPage(transaction, pageNum, maxFillFactor);
+            if (result == -1) {
+                break;
+            }
+            freed += result;
+        }
+        return freed;
+    }
+
+    /**
+     * Closes the table, first saving its counts and marking its free space
+     * map populated so that the table can be reloaded without recounting its
+     * records. close is not called within a transaction, so the free space
+     * map is written without one.
+     */
     public void close() {
+        saveCounts(null);
+        freeSpaceMap.markPopulated(null);
+        zoneMap.close();
+        freeSpaceMap.close();
         allocator.close();
     }
 
+    /**
+     * Deletes the files of the closed table persisted in `filename`: the
+     * table's own file and the FreeSpaceMap and ZoneMap files next to it.
+     * Deleting a table's file alone leaves the other two behind. Returns
+     * false if some file that exists couldn't be deleted.
+     */
+    public static boolean deleteFiles(String filename) {
+        boolean deleted = true;
+        String[] filenames = {
+            filename,
+            filename + FreeSpaceMap.FILENAME_EXTENSION,
+            filename + ZoneMap.FILENAME_EXTENSION,
+        };
+        for (String f : filenames) {
+            File file = new File(f);
+            if (file.exists() && !file.delete()) {
+                deleted = false;
+            }
+        }
+        return deleted;
+    }
+
     // Helpers ///////////////////////////////////////////////////////////////////
     private static Schema readSchemaFromHeaderPage(BaseTransaction transaction,
             PageAllocator allocator) {
@@ -393,11 +1044,375 @@ public class Table implements Closeable {
         return Schema.fromBytes(buf);
     }
 
+    /**
+     * Reads the PageFormat that follows the schema on the header page and
+     * returns the corresponding layout for records of `schema`. Tables written
+     * before formats existed have nothing after their schema, which reads as
+     * format 0, FIXED_WIDTH.
+     */
+    private static PageLayout readPageLayoutFromHeaderPage(BaseTransaction transaction,
+            PageAllocator allocator, Schema schema) {
+        Page headerPage = allocator.fetchPage(transaction, 0);
+        Buffer buf = headerPage.getBuffer(transaction);
+        Schema.fromBytes(buf);
+        PageFormat format = PageFormat.values()[buf.getInt()];
+        return PageLayout.create(format, schema, Page.pageSize);
+    }
+
     private static void writeSchemaToHeaderPage(BaseTransaction transaction, PageAllocator allocator,
-            Schema schema) {
+            Schema schema, PageFormat format) {
         Page headerPage = allocator.fetchPage(transaction, allocator.allocPage(transaction));
         assert(0 == headerPage.getPageNum());
-        headerPage.getBuffer(transaction).put(schema.toBytes());
+        Buffer buf = headerPage.getBuffer(transaction);
+        buf.put(schema.toBytes()).putInt(format.ordinal());
+    }
+
+    /**
+     * Moves every record of data page `pageNum` to a lower-numbered page (see
+     * compact), if the page is at most `maxFillFactor` full, and frees the page.
+     * Returns 1 if the page was freed, 0 if it was skipped, or -1 if there are
+     * no free slots left below it.
+     *
+     * The page is latched while we decide whether to drain it, while each of
+     * its records is moved (see moveRecord), and while we free it, but not in
+     * between, so other threads can use the table while the page drains. Calls
+     * are serialized by compactionLock.
+     */
+    private int drainPage(BaseTransaction transaction, int pageNum,
+                          float maxFillFactor) throws DatabaseException {
+        synchronized (compactionLock) {
+            byte[] bitmap;
+            Lock latch = latches.writeLatch(pageNum);
+            latch.lock();
+            try {
+                if (!freePageNums.contains(pageNum)) {
+                    return 0;
+                }
+                Page page = allocator.fetchPage(transaction, pageNum);
+                if (getOccupancy(transaction, page) > maxFillFactor * numRecordsPerPage) {
+                    return 0;
+                }
+
+                // Keep records from being moved back onto this page.
+                freePageNums.remove(pageNum);
+                bitmap = getBitMap(transaction, page);
+            } finally {
+                latch.unlock();
+            }
+
+            boolean drained = false;
+            try {
+                for (int i = PageBitmap.nextSetBit(bitmap, 0); i != -1;
+                        i = PageBitmap.nextSetBit(bitmap, i + 1)) {
+                    Integer firstFreePageNum = freePageNums.ceiling(0);
+                    if (firstFreePageNum == null || firstFreePageNum > pageNum) {
+                        return -1;
+                    }
+                    moveRecord(transaction, new RecordId(pageNum, (short) i));
+                }
+                drained = true;
+            } finally {
+                if (!drained) {
+                    restoreFreePage(transaction, pageNum);
+                }
+            }
+            return freePageIfEmpty(transaction, pageNum) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Moves the record with id `rid`, on a page drainPage is draining, to
+     * another page, unless it has been deleted since drainPage read the
+     * page's bitmap.
+     *
+     * The record's page is write latched from before the record is read
+     * until after it is deleted, so no other thread can update or delete the
+     * record in between, or see it both at its old id and at its new one.
+     * addRecord and deleteRecord latch the pages they touch themselves; the
+     * latch of the record's page, like mutationGuard, is reentrant. This is
+     * the only place a thread holds two page latches at once, and calls are
+     * serialized by compactionLock, so no two threads ever wait on each
+     * other's latches.
+     *
+     * The insert lock of the record's page is taken before its latch, as an
+     * inserter would. Otherwise an inserter holding the insert lock of the
+     * page's stripe could wait for our latch while addRecord waits for that
+     * insert lock.
+     */
+    private void moveRecord(BaseTransaction transaction, RecordId rid) throws DatabaseException {
+        int pageNum = rid.getPageNum();
+        Lock guard = mutationGuard.readLock();
+        guard.lock();
+        try {
+            Lock insertLock = latches.insertLock(pageNum);
+            Lock latch = latches.writeLatch(pageNum);
+            insertLock.lock();
+            latch.lock();
+            try {
+                Page page = allocator.fetchPage(transaction, pageNum);
+                if (Bits.getBit(getBitMap(transaction, page), rid.getEntryNum()) == Bits.Bit.ZERO) {
+                    return;
+                }
+                Record record = getRecord(transaction, rid);
+
+                // A concurrent delete of another record on the page may have
+                // added the page back to freePageNums, and so may deleting
+                // this one. Take it out before addRecord can pick it, and
+                // again before we release it.
+                freePageNums.remove(pageNum);
+                RecordId newRid = addRecord(transaction, record.getValues());
+                remapIndices(transaction, record, newRid);
+                deleteRecord(transaction, rid);
+                freePageNums.remove(pageNum);
+            } finally {
+                latch.unlock();
+                insertLock.unlock();
+            }
+        } finally {
+            guard.unlock();
+        }
+    }
+
+    /**
+     * Points the entry of `record`, which moveRecord just moved to `newRid`,
+     * in every index of the table at `newRid`. Each index is latched by the
+     * BPlusTree itself, after the record's page; nothing latches a page while
+     * holding an index's latch.
+     */
+    private void remapIndices(BaseTransaction transaction, Record record,
+                              RecordId newRid) throws DatabaseException {
+        List<String> fieldNames = schema.getFieldNames();
+        for (Map.Entry<String, BPlusTree> entry : indices.entrySet()) {
+            DataBox key = record.getValues().get(fieldNames.indexOf(entry.getKey()));
+            BPlusTree index = entry.getValue();
+            index.remove(transaction, key);
+            try {
+                index.put(transaction, key, newRid);
+            } catch (BPlusTreeException e) {
+                String msg = String.format("Couldn't move %s to %s in the index on %s: %s",
+                                           key, newRid, entry.getKey(), e.getMessage());
+                throw new DatabaseException(msg);
+            }
+        }
+    }
+
+    /**
+     * Adds data page `pageNum`, which drainPage took out of freePageNums, back
+     * if it has room for more records.
+     */
+    private void restoreFreePage(BaseTransaction transaction, int pageNum) {
+        Lock latch = latches.writeLatch(pageNum);
+        latch.lock();
+        try {
+            Page page = allocator.fetchPage(transaction, pageNum);
+            if (getOccupancy(transaction, page) < numRecordsPerPage) {
+                freePageNums.add(pageNum);
+            }
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * Frees data page `pageNum`, which drainPage took out of freePageNums, if
+     * it has no records, and returns whether it did. Otherwise (i.e. if a
+     * record was added to it while it was being drained), the page is
+     * restored as in restoreFreePage.
+     */
+    private boolean freePageIfEmpty(BaseTransaction transaction, int pageNum) {
+        Lock latch = latches.writeLatch(pageNum);
+        latch.lock();
+        try {
+            Page page = allocator.fetchPage(transaction, pageNum);
+            int occupancy = getOccupancy(transaction, page);
+            if (occupancy != 0) {
+                if (occupancy < numRecordsPerPage) {
+                    freePageNums.add(pageNum);
+                }
+                return false;
+            }
+            synchronized (allocator) {
+                allocator.freePage(transaction, pageNum);
+                freeSpaceMap.setNumDataPages(transaction, getNumDataPages());
+            }
+            freePageNums.remove(pageNum);
+            freeSpaceMap.setFree(transaction, pageNum, false);
+            zoneMap.clear(transaction, pageNum);
+            layout.forgetPage(pageNum);
+            setOccupancy(pageNum, -1);
+            return true;
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * Write latches a page for addRecord to insert into and returns its page
+     * number; the caller releases it with unlatchFreePage. The page was in
+     * freePageNums when it was chosen, but since it was chosen before it was
+     * latched, the caller must check that it still is.
+     *
+     * If every inserter waited for the first free page, concurrent inserters
+     * would all insert into that one page, one at a time. Instead, we try to
+     * take the insert lock (see PageLatches) of each of the first
+     * numInsertTargets free pages in turn, without waiting, and insert into
+     * the first page whose insert lock no other inserter holds. A single
+     * inserter thus always gets the first free page, while concurrent
+     * inserters spread out over the following ones. Once we hold a page's
+     * insert lock, we wait for its write latch, which readers and updaters of
+     * the page's stripe only hold briefly.
+     *
+     * Only if every one of those insert locks is taken, and there are fewer
+     * than numInsertTargets free pages, do we allocate another one; otherwise,
+     * we wait for the insert lock of the first.
+     */
+    private int latchFreePage(BaseTransaction transaction) {
+        while (true) {
+            List<Integer> targets = new ArrayList<>(numInsertTargets);
+            for (int pageNum : freePageNums) {
+                if (targets.size() == numInsertTargets) {
+                    break;
+                }
+                targets.add(pageNum);
+            }
+            for (int pageNum : targets) {
+                if (latches.insertLock(pageNum).tryLock()) {
+                    latches.writeLatch(pageNum).lock();
+                    return pageNum;
+                }
+            }
+
+            if (targets.size() < numInsertTargets) {
+                int pageNum = allocateDataPage(transaction, targets.size());
+                if (pageNum != -1 && latches.insertLock(pageNum).tryLock()) {
+                    latches.writeLatch(pageNum).lock();
+                    return pageNum;
+                }
+            } else {
+                int pageNum = targets.get(0);
+                latches.insertLock(pageNum).lock();
+                latches.writeLatch(pageNum).lock();
+                return pageNum;
+            }
+        }
+    }
+
+    /** Releases page `pageNum`, which latchFreePage returned. */
+    private void unlatchFreePage(int pageNum) {
+        latches.writeLatch(pageNum).unlock();
+        latches.insertLock(pageNum).unlock();
+    }
+
+    /**
+     * Allocates a new data page and adds it to freePageNums, unless some
+     * other thread has added pages to freePageNums since we saw
+     * `numFreePages` of them. Returns the new page's number, or -1 if no page
+     * was allocated.
+     */
+    private int allocateDataPage(BaseTransaction transaction, int numFreePages) {
+        synchronized (allocator) {
+            // Skip numFreePages free pages and check for another, rather than
+            // calling freePageNums.size(), which would count all of them.
+            Iterator<Integer> iter = freePageNums.iterator();
+            for (int i = 0; i < numFreePages && iter.hasNext(); ++i) {
+                iter.next();
+            }
+            if (iter.hasNext()) {
+                return -1;
+            }
+            int pageNum = allocator.allocPage(transaction);
+            freeSpaceMap.setNumDataPages(transaction, getNumDataPages());
+            setOccupancy(pageNum, 0);
+            freeSpaceMap.setFree(transaction, pageNum, true);
+            freePageNums.add(pageNum);
+            return pageNum;
+        }
+    }
+
+    /**
+     * Returns the bytes of the record with id `rid`, throwing an exception if
+     * no such record exists.
+     */
+    private byte[] getRecordBytes(BaseTransaction transaction,
+                                  RecordId rid) throws DatabaseException {
+        validateRecordId(rid);
+        Lock latch = latches.readLatch(rid.getPageNum());
+        latch.lock();
+        try {
+            Page page = allocator.fetchPage(transaction, rid.getPageNum());
+            byte[] bitmap = getBitMap(transaction, page);
+            if (Bits.getBit(bitmap, rid.getEntryNum()) == Bits.Bit.ZERO) {
+                String msg = String.format("Record %s does not exist.", rid);
+                throw new DatabaseException(msg);
+            }
+            return layout.getRecordBytes(transaction, page, rid.getEntryNum());
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * Updates numRecords and numModifications after `added` records were
+     * added to the table and `removed` were removed from it; an update removes
+     * the old record and adds the new one. Must be called with the read lock
+     * of mutationGuard held, the same hold under which the records were
+     * added and removed. Neither counter is written to freeSpaceMap here; see
+     * saveCounts.
+     */
+    private void recordChanges(int added, int removed) {
+        if (added != removed) {
+            numRecords.add(added - removed);
+        }
+        numModifications.add(Math.max(added, removed));
+    }
+
+    /**
+     * Writes numRecords and numModifications to freeSpaceMap. Called when the
+     * statistics are built and when the table is closed, never by
+     * modifications, so that they don't all contend on the free space map's
+     * header page.
+     */
+    private void saveCounts(BaseTransaction transaction) {
+        freeSpaceMap.setNumRecords(transaction, numRecords.sum());
+        freeSpaceMap.setNumModifications(transaction, numModifications.sum());
+    }
+
+    /**
+     * Populates freeSpaceMap from the bitmaps of every data page. Only the
+     * bitmaps are read; records themselves are never deserialized.
+     */
+    private void rebuildFreeSpaceMap(BaseTransaction transaction) {
+        long count = 0;
+        Iterator<Page> iter = this.allocator.iterator(transaction);
+        iter.next(); // Skip the header page.
+        while (iter.hasNext()) {
+            Page page = iter.next();
+            int n = numRecordsOnPage(transaction, page);
+            setOccupancy(page.getPageNum(), n);
+            count += n;
+            freeSpaceMap.setFree(transaction, page.getPageNum(), n != numRecordsPerPage);
+        }
+        freeSpaceMap.setNumRecords(transaction, count);
+    }
+
+    /**
+     * Populates zoneMap from the records of every data page.
+     */
+    private void rebuildZoneMap(BaseTransaction transaction) {
+        Iterator<Page> iter = this.allocator.iterator(transaction);
+        iter.next(); // Skip the header page.
+        while (iter.hasNext()) {
+            Page page = iter.next();
+            byte[] bitmap = getBitMap(transaction, page);
+            List<Record> records = new ArrayList<>();
+            for (int i = PageBitmap.nextSetBit(bitmap, 0); i != -1;
+                    i = PageBitmap.nextSetBit(bitmap, i + 1)) {
+                byte[] bytes = layout.getRecordBytes(transaction, page, i);
+                records.add(layout.getRecordFormat().fromBytes(bytes, 0));
+            }
+            zoneMap.addRecords(transaction, page.getPageNum(), records);
+        }
+        zoneMap.markPopulated(transaction);
     }
 
     /**
@@ -427,14 +1442,43 @@ public class Table implements Closeable {
     }
 
     private int numRecordsOnPage(BaseTransaction transaction, Page page) {
-        byte[] bitmap = getBitMap(transaction, page);
-        int numRecords = 0;
-        for (int i = 0; i < numRecordsPerPage; ++i) {
-            if (Bits.getBit(bitmap, i) == Bits.Bit.ONE) {
-                numRecords++;
-            }
+        return PageBitmap.cardinality(getBitMap(transaction, page));
+    }
+
+    /**
+     * Returns the number of records on `page`, counting them (once) if we
+     * haven't yet.
+     */
+    private int getOccupancy(BaseTransaction transaction, Page page) {
+        int n = pageOccupancy.get(page.getPageNum());
+        if (n == -1) {
+            n = numRecordsOnPage(transaction, page);
+            pageOccupancy.set(page.getPageNum(), n);
         }
-        return numRecords;
+        return n;
+    }
+
+    /**
+     * Records that there are `n` records on data page `pageNum`, or forgets
+     * how many there are if `n` is -1.
+     */
+    private void setOccupancy(int pageNum, int n) {
+        pageOccupancy.set(pageNum, n);
+    }
+
+    private void initScratchBitmaps() {
+        this.scratchBitmap = new ThreadLocal<byte[]>() {
+            @Override
+            protected byte[] initialValue() {
+                return new byte[bitmapSizeInBytes];
+            }
+        };
+        this.scratchWords = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                return PageBitmap.newWords(bitmapSizeInBytes);
+            }
+        };
     }
 
     private void validateRecordId(RecordId rid) throws DatabaseException {
@@ -467,6 +1511,55 @@ public class Table implements Closeable {
         return new RecordIterator(transaction, this, ridIterator(transaction));
     }
 
+    /**
+     * Returns an iterator over the records of the table that satisfy every one
+     * of `predicates`, in the same order as iterator, whose values are only
+     * decoded when they are used; see PageScanIterator. Only the `fields` of
+     * each record are returned, or all of them if `fields` is null. Up to
+     * `prefetchWindow` pages are read ahead; see PrefetchingPageIterator.
+     * Unlike iterator, it can't be marked or reset.
+     */
+    public Iterator<Record> iterator(BaseTransaction transaction, int[] fields,
+                                     List<ScanPredicate> predicates, int prefetchWindow) {
+        Iterator<Page> pageIter = iteratorSkipPage(pageIterator(transaction, prefetchWindow));
+        return new PageScanIterator(this, transaction, pageIter, fields, predicates);
+    }
+
+    /**
+     * Returns an iterator over all of the pages of the table, header page
+     * included, that reads up to `prefetchWindow` pages ahead on a background
+     * thread, or reads pages only when they are needed if `prefetchWindow` is
+     * 0; see PrefetchingPageIterator.
+     */
+    public Iterator<Page> pageIterator(BaseTransaction transaction, int prefetchWindow) {
+        if (prefetchWindow > 0) {
+            lockForConcurrentReads(transaction);
+        }
+        return PrefetchingPageIterator.wrap(transaction, allocator.iterator(transaction),
+                                            prefetchWindow);
+    }
+
+    /**
+     * Returns an iterator over the records of the table, in the same order as
+     * iterator, that reads and decodes the table's pages on every core; see
+     * ParallelPageScanIterator. Unlike iterator, it can't be marked or reset.
+     */
+    public Iterator<Record> parallelIterator(BaseTransaction transaction) {
+        return parallelIterator(transaction, null, Collections.<ScanPredicate>emptyList());
+    }
+
+    /**
+     * Same as iterator(transaction, fields, predicates, prefetchWindow), but
+     * reads, decodes and filters the table's pages on every core.
+     */
+    public Iterator<Record> parallelIterator(BaseTransaction transaction, int[] fields,
+                                             List<ScanPredicate> predicates) {
+        lockForConcurrentReads(transaction);
+        return new ParallelPageScanIterator(this, transaction,
+                                            iteratorSkipPage(allocator.iterator(transaction)),
+                                            fields, predicates);
+    }
+
     public BacktrackingIterator<Record> blockIterator(BaseTransaction transaction, Page[] block) {
         return new RecordIterator(transaction, this, new RIDBlockIterator(transaction, block));
     }
@@ -508,23 +1601,21 @@ public class Table implements Closeable {
         }
 
         public boolean hasNext() {
-            short k = cur;
-            while (k < 8 * bitmap.length) {
-                if (Bits.getBit(bitmap, k) == Bits.Bit.ONE) {
-                    cur = k;
-                    return true;
-                }
-                k++;
+            int k = PageBitmap.nextSetBit(bitmap, cur);
+            if (k == -1) {
+                return false;
             }
-            return false;
+            cur = (short) k;
+            return true;
         }
 
         public RecordId next() {
-            while (Bits.getBit(bitmap, cur).equals(Bits.Bit.ZERO)) {
-                cur++;
+            int k = PageBitmap.nextSetBit(bitmap, cur);
+            if (k == -1) {
+                throw new NoSuchElementException();
             }
-
-            return new RecordId(pageNum, cur++);
+            cur = (short) (k + 1);
+            return new RecordId(pageNum, (short) k);
         }
 
         public void mark() {
@@ -710,6 +1801,19 @@ public class Table implements Closeable {
         }
     }
 
+    /**
+     * Locks the whole table in S mode for `transaction`, on the calling
+     * thread. Iterators that read pages on other threads (see
+     * PrefetchingPageIterator and ParallelPageScanIterator) call this before
+     * they start any, since BaseTransaction is not thread-safe: with the table
+     * locked, the lock on each page that those threads request for the
+     * transaction is already held, so they only read its lock state and never
+     * change it.
+     */
+    private void lockForConcurrentReads(BaseTransaction transaction) {
+        LockUtil.requestLocks(transaction, lockContext, LockType.S);
+    }
+
     /**
      * A helper function that returns the same iterator passed in, but with
      * a single page skipped.
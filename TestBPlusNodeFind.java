@@ -0,0 +1,144 @@
+package edu.berkeley.cs186.database.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.StringDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.io.PageAllocator;
+import edu.berkeley.cs186.database.table.RecordId;
+
+import static org.junit.Assert.*;
+
+public class TestBPlusNodeFind {
+    private PageAllocator allocator;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void beforeEach() throws IOException {
+        String filename = tempFolder.newFile("tree").getAbsolutePath();
+        this.allocator = new PageAllocator(new DummyLockContext(), filename, true, null);
+    }
+
+    @After
+    public void afterEach() {
+        allocator.close();
+    }
+
+    /**
+     * Builds a tree of order 2 over `keys`, which must be sorted, with one
+     * inner node over leaves of `leafSize` keys each, and returns the page
+     * number of its root. Key i is mapped to record id (i, i) in `expected`.
+     */
+    private int buildTree(BPlusTreeMetadata metadata, List<DataBox> keys, int leafSize,
+                          Map<DataBox, RecordId> expected) {
+        // Build the leaves right to left, so that each knows its right sibling.
+        List<DataBox> innerKeys = new ArrayList<>();
+        List<Integer> children = new ArrayList<>();
+        Optional<Integer> rightSibling = Optional.empty();
+        int numLeaves = (keys.size() + leafSize - 1) / leafSize;
+        for (int l = numLeaves - 1; l >= 0; --l) {
+            List<DataBox> leafKeys = new ArrayList<>();
+            List<RecordId> rids = new ArrayList<>();
+            for (int i = l * leafSize; i < Math.min(keys.size(), (l + 1) * leafSize); ++i) {
+                RecordId rid = new RecordId(i, (short) i);
+                leafKeys.add(keys.get(i));
+                rids.add(rid);
+                expected.put(keys.get(i), rid);
+            }
+            LeafNode leaf = new LeafNode(metadata, leafKeys, rids, rightSibling, null);
+            rightSibling = Optional.of(leaf.getPage().getPageNum());
+            children.add(0, leaf.getPage().getPageNum());
+            if (l > 0) {
+                innerKeys.add(0, leafKeys.get(0));
+            }
+        }
+        InnerNode root = new InnerNode(metadata, innerKeys, children, null);
+        return root.getPage().getPageNum();
+    }
+
+    @Test
+    public void testFindIntKeys() {
+        BPlusTreeMetadata metadata = new BPlusTreeMetadata(allocator, Type.intType(), 2);
+        List<DataBox> keys = new ArrayList<>();
+        for (int k : new int[] {1, 2, 3, 11, 12, 13, 21, 22, 23}) {
+            keys.add(new IntDataBox(k));
+        }
+        Map<DataBox, RecordId> expected = new HashMap<>();
+        int root = buildTree(metadata, keys, 3, expected);
+
+        // Every key is found, including those equal to the keys of the inner
+        // node, and no key between or around them is.
+        for (int k = -1; k <= 25; ++k) {
+            DataBox key = new IntDataBox(k);
+            assertEquals("key " + k, Optional.ofNullable(expected.get(key)),
+                         BPlusNode.find(null, metadata, root, key));
+        }
+    }
+
+    @Test
+    public void testFindCachesNodes() {
+        BPlusTreeMetadata metadata = new BPlusTreeMetadata(allocator, Type.intType(), 2);
+        List<DataBox> keys = new ArrayList<>();
+        for (int k = 0; k < 12; ++k) {
+            keys.add(new IntDataBox(k));
+        }
+        Map<DataBox, RecordId> expected = new HashMap<>();
+        int root = buildTree(metadata, keys, 4, expected);
+        assertNull(metadata.getNodeCache().get(root));
+
+        // The first pass decodes and caches every node, and the second finds
+        // every key in the cached nodes.
+        for (int pass = 0; pass < 2; ++pass) {
+            for (int k = -1; k <= 12; ++k) {
+                DataBox key = new IntDataBox(k);
+                assertEquals("key " + k, Optional.ofNullable(expected.get(key)),
+                             BPlusNode.find(null, metadata, root, key));
+            }
+            assertTrue(metadata.getNodeCache().get(root) instanceof InnerNode);
+        }
+    }
+
+    @Test
+    public void testFindStringKeys() {
+        BPlusTreeMetadata metadata = new BPlusTreeMetadata(allocator, Type.stringType(3), 2);
+        List<DataBox> keys = new ArrayList<>();
+        for (String k : new String[] {"a", "b", "ba", "c", "d"}) {
+            keys.add(new StringDataBox(k, 3));
+        }
+        Map<DataBox, RecordId> expected = new HashMap<>();
+        int root = buildTree(metadata, keys, 2, expected);
+
+        for (DataBox key : keys) {
+            assertEquals(Optional.of(expected.get(key)), BPlusNode.find(null, metadata, root, key));
+        }
+        for (String k : new String[] {"", "aa", "bb", "cd", "e"}) {
+            DataBox key = new StringDataBox(k, 3);
+            assertEquals(Optional.empty(), BPlusNode.find(null, metadata, root, key));
+        }
+    }
+
+    @Test
+    public void testFindInEmptyLeaf() {
+        BPlusTreeMetadata metadata = new BPlusTreeMetadata(allocator, Type.intType(), 2);
+        LeafNode leaf = new LeafNode(metadata, new ArrayList<DataBox>(), new ArrayList<RecordId>(),
+                                     Optional.<Integer>empty(), null);
+        assertEquals(Optional.empty(), BPlusNode.find(null, metadata, leaf.getPage().getPageNum(),
+                     new IntDataBox(0)));
+    }
+}
@@ -0,0 +1,255 @@
+package edu.berkeley.cs186.database.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.berkeley.cs186.database.common.Pair;
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.table.RecordId;
+
+import static org.junit.Assert.*;
+
+public class TestBPlusTree {
+    private String filename;
+    private BPlusTree tree;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void beforeEach() throws IOException, BPlusTreeException {
+        this.filename = tempFolder.newFile("tree").getAbsolutePath();
+        this.tree = new BPlusTree(filename, Type.intType(), 2, new DummyLockContext(), null);
+    }
+
+    @After
+    public void afterEach() {
+        tree.close();
+    }
+
+    private static DataBox key(int i) {
+        return new IntDataBox(i);
+    }
+
+    private static RecordId rid(int i) {
+        return new RecordId(i, (short) i);
+    }
+
+    private static List<RecordId> toList(Iterator<RecordId> iter) {
+        List<RecordId> rids = new ArrayList<>();
+        while (iter.hasNext()) {
+            rids.add(iter.next());
+        }
+        return rids;
+    }
+
+    private static List<RecordId> rids(int from, int to) {
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = from; i < to; ++i) {
+            rids.add(rid(i));
+        }
+        return rids;
+    }
+
+    @Test
+    public void testPutSplitsLeafAndRoot() throws BPlusTreeException {
+        for (int i = 1; i <= 5; ++i) {
+            tree.put(null, key(i), rid(i));
+        }
+        assertEquals("(((1 (1 1)) (2 (2 2))) 3 ((3 (3 3)) (4 (4 4)) (5 (5 5))))",
+                     tree.toSexp(null));
+    }
+
+    @Test
+    public void testPutInRandomOrder() throws BPlusTreeException {
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            keys.add(i);
+        }
+        Collections.shuffle(keys, new Random(186));
+        for (int i : keys) {
+            tree.put(null, key(i), rid(i));
+        }
+
+        for (int i = -1; i <= 500; ++i) {
+            Optional<RecordId> expected = i >= 0 && i < 500 ? Optional.of(rid(i)) : Optional.empty();
+            assertEquals(expected, tree.get(null, key(i)));
+        }
+        assertEquals(rids(0, 500), toList(tree.scanAll(null)));
+        assertEquals(rids(250, 500), toList(tree.scanGreaterEqual(null, key(250))));
+        assertEquals(rids(0, 0), toList(tree.scanGreaterEqual(null, key(500))));
+    }
+
+    @Test(expected = BPlusTreeException.class)
+    public void testPutDuplicate() throws BPlusTreeException {
+        tree.put(null, key(0), rid(0));
+        tree.put(null, key(0), rid(1));
+    }
+
+    @Test
+    public void testRemove() throws BPlusTreeException {
+        for (int i = 0; i < 100; ++i) {
+            tree.put(null, key(i), rid(i));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            tree.remove(null, key(i));
+        }
+
+        List<RecordId> expected = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(i % 2 == 1, tree.get(null, key(i)).isPresent());
+            if (i % 2 == 1) {
+                expected.add(rid(i));
+            }
+        }
+        assertEquals(expected, toList(tree.scanAll(null)));
+
+        // The removed keys can be put again.
+        tree.put(null, key(0), rid(0));
+        assertEquals(Optional.of(rid(0)), tree.get(null, key(0)));
+    }
+
+    @Test
+    public void testBulkLoad() throws BPlusTreeException {
+        List<Pair<DataBox, RecordId>> data = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            data.add(new Pair<>(key(i), rid(i)));
+        }
+        tree.bulkLoad(null, data.iterator(), 0.75f);
+
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(Optional.of(rid(i)), tree.get(null, key(i)));
+        }
+        assertEquals(rids(0, 100), toList(tree.scanAll(null)));
+    }
+
+    @Test(expected = BPlusTreeException.class)
+    public void testBulkLoadNonEmpty() throws BPlusTreeException {
+        tree.put(null, key(0), rid(0));
+        List<Pair<DataBox, RecordId>> data = new ArrayList<>();
+        data.add(new Pair<>(key(1), rid(1)));
+        tree.bulkLoad(null, data.iterator(), 1.0f);
+    }
+
+    @Test
+    public void testScanDuringPuts() throws BPlusTreeException {
+        for (int i = 0; i < 100; i += 2) {
+            tree.put(null, key(i), rid(i));
+        }
+
+        // Splitting the leaves ahead of and behind the scan returns every
+        // record id at most once, in order, and every record id that was in
+        // the tree before the scan began.
+        Iterator<RecordId> iter = tree.scanAll(null);
+        List<RecordId> scanned = new ArrayList<>();
+        for (int i = 1; i < 100; i += 2) {
+            if (iter.hasNext()) {
+                scanned.add(iter.next());
+            }
+            tree.put(null, key(i), rid(i));
+        }
+        scanned.addAll(toList(iter));
+        for (int i = 1; i < scanned.size(); ++i) {
+            assertTrue(scanned.get(i - 1).getPageNum() < scanned.get(i).getPageNum());
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(scanned.contains(rid(i)));
+        }
+    }
+
+    @Test
+    public void testGetDuringConcurrentWrites() throws Exception {
+        for (int i = 0; i < 1000; i += 2) {
+            tree.put(null, key(i), rid(i));
+        }
+
+        // One thread puts and removes the odd keys, splitting nodes all over
+        // the tree, while others look up the even keys, which are always
+        // there, and keys past the end, which never are.
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<Integer> keys = new ArrayList<>();
+                    for (int i = 1; i < 1000; i += 2) {
+                        keys.add(i);
+                    }
+                    Collections.shuffle(keys, new Random(186));
+                    for (int i : keys) {
+                        tree.put(null, key(i), rid(i));
+                    }
+                    for (int i : keys) {
+                        tree.remove(null, key(i));
+                    }
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                } finally {
+                    done.set(true);
+                }
+            }
+        });
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; ++r) {
+            final int seed = r;
+            readers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(seed);
+                        while (!done.get()) {
+                            int i = 2 * random.nextInt(500);
+                            assertEquals(Optional.of(rid(i)), tree.get(null, key(i)));
+                            assertEquals(Optional.empty(), tree.get(null, key(1000 + i)));
+                        }
+                    } catch (Throwable t) {
+                        error.compareAndSet(null, t);
+                    }
+                }
+            }));
+        }
+
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        writer.start();
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        assertEquals(500, toList(tree.scanAll(null)).size());
+    }
+
+    @Test
+    public void testReload() throws BPlusTreeException {
+        for (int i = 0; i < 100; ++i) {
+            tree.put(null, key(i), rid(i));
+        }
+        tree.close();
+        tree = new BPlusTree(filename, new DummyLockContext(), null);
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(Optional.of(rid(i)), tree.get(null, key(i)));
+        }
+        assertEquals(rids(0, 100), toList(tree.scanAll(null)));
+    }
+}
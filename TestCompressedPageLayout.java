@@ -0,0 +1,160 @@
+package edu.berkeley.cs186.database.table;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.berkeley.cs186.database.DatabaseException;
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.databox.BoolDataBox;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.FloatDataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.StringDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.io.Page;
+
+import static org.junit.Assert.*;
+
+public class TestCompressedPageLayout {
+    private static final String TABLENAME = "testtable";
+
+    private String filename;
+    private Schema schema;
+    private Table table;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void beforeEach() throws IOException {
+        this.filename = tempFolder.newFile(TABLENAME + Table.FILENAME_EXTENSION).getAbsolutePath();
+        this.schema = new Schema(Arrays.asList("run", "dict", "plain", "b", "s"),
+                                 Arrays.asList(Type.intType(), Type.intType(), Type.floatType(),
+                                               Type.boolType(), Type.stringType(8)));
+        this.table = newTable(filename);
+    }
+
+    @After
+    public void afterEach() {
+        table.close();
+    }
+
+    private Table newTable(String filename) {
+        return new Table(TABLENAME, schema, filename, new DummyLockContext(), null,
+                         Table.PageFormat.COMPRESSED);
+    }
+
+    // Record i has a column of long runs, a column with few distinct values,
+    // and a column with no repeated values, so that the page uses every
+    // encoding.
+    private static List<DataBox> values(int i) {
+        return Arrays.asList(new IntDataBox(i / 100), new IntDataBox(i % 7 * 1000),
+                             new FloatDataBox(i * 1.5f), new BoolDataBox(i % 3 == 0),
+                             new StringDataBox("s" + Math.abs(i % 5), 8));
+    }
+
+    private static Iterator<List<DataBox>> valuesIterator(int from, int to) {
+        List<List<DataBox>> values = new ArrayList<>();
+        for (int i = from; i < to; ++i) {
+            values.add(values(i));
+        }
+        return values.iterator();
+    }
+
+    private List<List<DataBox>> scan(Table t) {
+        Iterator<Record> iter = t.iterator(null, null, Collections.<ScanPredicate>emptyList(), 0);
+        List<List<DataBox>> records = new ArrayList<>();
+        while (iter.hasNext()) {
+            records.add(iter.next().getValues());
+        }
+        return records;
+    }
+
+    @Test
+    public void testRoundTrip() throws DatabaseException {
+        int numRecords = 3 * table.getNumRecordsPerPage() + 17;
+        List<RecordId> rids = table.addRecords(null, valuesIterator(0, numRecords));
+        assertEquals(numRecords, rids.size());
+        assertEquals(numRecords, table.getNumRecords());
+
+        List<List<DataBox>> expected = new ArrayList<>();
+        for (int i = 0; i < numRecords; ++i) {
+            expected.add(values(i));
+            assertEquals(values(i), table.getRecord(null, rids.get(i)).getValues());
+        }
+        assertEquals(expected, scan(table));
+    }
+
+    @Test
+    public void testCompressesBetterThanFixedWidth() throws DatabaseException {
+        int numRecords = 4 * Table.computeNumRecordsPerPage(Page.pageSize, schema);
+        table.addRecords(null, valuesIterator(0, numRecords));
+        assertTrue(table.getNumDataPages() < 4);
+    }
+
+    @Test
+    public void testModificationsInvalidateDecodedPage() throws DatabaseException {
+        List<RecordId> rids = table.addRecords(null, valuesIterator(0, 100));
+
+        // Decode (and cache) the page, then change it, and read it again both
+        // by record and by scan.
+        assertEquals(values(5), table.getRecord(null, rids.get(5)).getValues());
+        assertEquals(100, scan(table).size());
+
+        table.updateRecord(null, values(1005), rids.get(5));
+        table.deleteRecord(null, rids.get(6));
+        RecordId rid = table.addRecord(null, values(2000));
+        assertEquals(rids.get(6), rid);
+
+        List<List<DataBox>> expected = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            expected.add(values(i == 5 ? 1005 : i == 6 ? 2000 : i));
+        }
+        assertEquals(values(1005), table.getRecord(null, rids.get(5)).getValues());
+        assertEquals(values(2000), table.getRecord(null, rids.get(6)).getValues());
+        assertEquals(expected, scan(table));
+    }
+
+    @Test
+    public void testTablesDoNotShareDecodedPages() throws DatabaseException, IOException {
+        String otherFilename = tempFolder.newFile("other" + Table.FILENAME_EXTENSION)
+                               .getAbsolutePath();
+        Table other = newTable(otherFilename);
+        try {
+            // Page 1 of both tables is at the same version after one write.
+            table.addRecords(null, valuesIterator(0, 10));
+            other.addRecords(null, valuesIterator(500, 510));
+            assertEquals(values(3), table.getRecord(null, new RecordId(1, (short) 3)).getValues());
+            assertEquals(values(503), other.getRecord(null, new RecordId(1, (short) 3)).getValues());
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void testReload() throws DatabaseException {
+        int numRecords = 2 * table.getNumRecordsPerPage();
+        table.addRecords(null, valuesIterator(0, numRecords));
+        List<List<DataBox>> expected = scan(table);
+
+        table.close();
+        table = new Table(TABLENAME, filename, new DummyLockContext(), null);
+        assertEquals(Table.PageFormat.COMPRESSED, table.getPageFormat());
+        assertEquals(numRecords, table.getNumRecords());
+        assertEquals(expected, scan(table));
+
+        // A reloaded page can still be written to.
+        RecordId rid = table.addRecord(null, values(-1));
+        assertEquals(values(-1), table.getRecord(null, rid).getValues());
+    }
+}
@@ -0,0 +1,139 @@
+package edu.berkeley.cs186.database.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.berkeley.cs186.database.common.Buffer;
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.FloatDataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.StringDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.io.Page;
+import edu.berkeley.cs186.database.io.PageAllocator;
+
+import static org.junit.Assert.*;
+
+public class TestKeyFormat {
+    // Keys are written after a header of HEADER_SIZE bytes, PADDING bytes
+    // apart, like the entries of a leaf.
+    private static final int HEADER_SIZE = 9;
+    private static final int PADDING = 6;
+
+    private PageAllocator allocator;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void beforeEach() throws IOException {
+        String filename = tempFolder.newFile("keys").getAbsolutePath();
+        this.allocator = new PageAllocator(new DummyLockContext(), filename, true, null);
+    }
+
+    @After
+    public void afterEach() {
+        allocator.close();
+    }
+
+    /** Writes `keys` to a new page and returns its buffer. */
+    private Buffer writeKeys(Type keySchema, List<DataBox> keys) {
+        Page page = allocator.fetchPage(null, allocator.allocPage(null));
+        Buffer buf = page.getBuffer(null);
+        int stride = keySchema.getSizeInBytes() + PADDING;
+        for (int i = 0; i < keys.size(); ++i) {
+            buf.position(HEADER_SIZE + i * stride);
+            buf.put(keys.get(i).toBytes());
+        }
+        return buf;
+    }
+
+    /**
+     * Checks that the KeyFormat of `keySchema` counts the keys less than, and
+     * less than or equal to, each of `probes` in the sorted `keys` the same
+     * way DataBox.compareTo does.
+     */
+    private void checkSearch(Type keySchema, List<DataBox> keys, List<DataBox> probes) {
+        KeyFormat format = KeyFormat.forType(keySchema);
+        Buffer buf = writeKeys(keySchema, keys);
+        int stride = keySchema.getSizeInBytes() + PADDING;
+        for (DataBox probe : probes) {
+            int lessThan = 0;
+            int lessThanEqual = 0;
+            for (DataBox key : keys) {
+                lessThan += key.compareTo(probe) < 0 ? 1 : 0;
+                lessThanEqual += key.compareTo(probe) <= 0 ? 1 : 0;
+            }
+            String msg = "probe " + probe;
+            assertEquals(msg, lessThan,
+                         format.numLessThan(buf, HEADER_SIZE, stride, keys.size(), probe));
+            assertEquals(msg, lessThanEqual,
+                         format.numLessThanEqual(buf, HEADER_SIZE, stride, keys.size(), probe));
+        }
+    }
+
+    @Test
+    public void testIntKeys() {
+        List<DataBox> keys = new ArrayList<>();
+        for (int k : new int[] {Integer.MIN_VALUE, -5, -1, 0, 3, 3, 3, 7, 100}) {
+            keys.add(new IntDataBox(k));
+        }
+        List<DataBox> probes = new ArrayList<>();
+        for (int k = -10; k <= 110; ++k) {
+            probes.add(new IntDataBox(k));
+        }
+        probes.add(new IntDataBox(Integer.MIN_VALUE));
+        probes.add(new IntDataBox(Integer.MAX_VALUE));
+        checkSearch(Type.intType(), keys, probes);
+    }
+
+    @Test
+    public void testFloatKeys() {
+        // Float.compare orders -0.0 before 0.0, and NaN after everything.
+        float[] sorted = {Float.NEGATIVE_INFINITY, -2.5f, -0.0f, 0.0f, 0.0f, 1.5f,
+                          Float.POSITIVE_INFINITY, Float.NaN
+                         };
+        List<DataBox> keys = new ArrayList<>();
+        for (float k : sorted) {
+            keys.add(new FloatDataBox(k));
+        }
+        List<DataBox> probes = new ArrayList<>();
+        for (float k : sorted) {
+            probes.add(new FloatDataBox(k));
+        }
+        for (float k : new float[] {-3, -1, 1, 2, 1e30f}) {
+            probes.add(new FloatDataBox(k));
+        }
+        checkSearch(Type.floatType(), keys, probes);
+    }
+
+    @Test
+    public void testStringKeys() {
+        List<DataBox> keys = new ArrayList<>();
+        for (String k : new String[] {"a", "ab", "abc", "b", "b", "zz"}) {
+            keys.add(new StringDataBox(k, 4));
+        }
+        List<DataBox> probes = new ArrayList<>(keys);
+        for (String k : new String[] {"", "aa", "abd", "ba", "c", "zzz"}) {
+            probes.add(new StringDataBox(k, 4));
+        }
+        checkSearch(Type.stringType(4), keys, probes);
+    }
+
+    @Test
+    public void testNoKeys() {
+        KeyFormat format = KeyFormat.forType(Type.intType());
+        Buffer buf = writeKeys(Type.intType(), Arrays.<DataBox>asList());
+        assertEquals(0, format.numLessThan(buf, HEADER_SIZE, 4, 0, new IntDataBox(0)));
+        assertEquals(0, format.numLessThanEqual(buf, HEADER_SIZE, 4, 0, new IntDataBox(0)));
+    }
+}
@@ -0,0 +1,155 @@
+package edu.berkeley.cs186.database.table;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestPageBitmap {
+    // Bitmap lengths, in bytes, around the 64-bit word boundaries.
+    private static final int[] LENGTHS = {1, 7, 8, 9, 15, 16, 17, 24, 25};
+
+    private static boolean isSet(byte[] bitmap, int i) {
+        return ((bitmap[i / 8] >> (7 - i % 8)) & 1) == 1;
+    }
+
+    private static byte[] randomBitmap(Random random, int length) {
+        byte[] bitmap = new byte[length];
+        random.nextBytes(bitmap);
+        return bitmap;
+    }
+
+    @Test
+    public void testToWordsMatchesBits() {
+        Random random = new Random(186);
+        for (int length : LENGTHS) {
+            byte[] bitmap = randomBitmap(random, length);
+            long[] words = PageBitmap.toWords(bitmap);
+            assertEquals((length + 7) / 8, words.length);
+            for (int i = 0; i < words.length * Long.SIZE; ++i) {
+                boolean set = (words[i / 64] & (1L << i)) != 0;
+                assertEquals(i < 8 * length && isSet(bitmap, i), set);
+            }
+        }
+    }
+
+    @Test
+    public void testFromWordsRoundTrips() {
+        Random random = new Random(186);
+        for (int length : LENGTHS) {
+            byte[] bitmap = randomBitmap(random, length);
+            byte[] copy = new byte[length];
+            PageBitmap.fromWords(PageBitmap.toWords(bitmap), copy);
+            assertArrayEquals(bitmap, copy);
+        }
+    }
+
+    @Test
+    public void testToWordsOfPrefix() {
+        // Only the first 9 bytes are the bitmap; the rest must be ignored.
+        byte[] bytes = new byte[16];
+        bytes[8] = (byte) 0x80;
+        bytes[9] = (byte) 0xFF;
+        long[] words = PageBitmap.toWords(bytes, 9);
+        assertEquals(2, words.length);
+        assertEquals(0L, words[0]);
+        assertEquals(1L, words[1]);
+    }
+
+    @Test
+    public void testSetBitAtWordBoundaries() {
+        long[] words = PageBitmap.toWords(new byte[17]);
+        int[] bits = {0, 63, 64, 127, 128, 135};
+        for (int i : bits) {
+            PageBitmap.setBit(words, i);
+        }
+        byte[] bitmap = new byte[17];
+        PageBitmap.fromWords(words, bitmap);
+        for (int i = 0; i < 8 * bitmap.length; ++i) {
+            boolean expected = false;
+            for (int b : bits) {
+                expected |= b == i;
+            }
+            assertEquals(expected, isSet(bitmap, i));
+        }
+        assertEquals(bits.length, PageBitmap.cardinality(words));
+    }
+
+    @Test
+    public void testNextSetBit() {
+        long[] words = PageBitmap.toWords(new byte[24]);
+        PageBitmap.setBit(words, 63);
+        PageBitmap.setBit(words, 64);
+        PageBitmap.setBit(words, 191);
+
+        assertEquals(63, PageBitmap.nextSetBit(words, 0));
+        assertEquals(63, PageBitmap.nextSetBit(words, 63));
+        assertEquals(64, PageBitmap.nextSetBit(words, 64));
+        assertEquals(191, PageBitmap.nextSetBit(words, 65));
+        assertEquals(191, PageBitmap.nextSetBit(words, 128));
+        assertEquals(-1, PageBitmap.nextSetBit(words, 192));
+        assertEquals(-1, PageBitmap.nextSetBit(words, 1000));
+    }
+
+    @Test
+    public void testNextClearBit() {
+        // 70 entries, all full but entries 64 and 69.
+        byte[] bitmap = new byte[9];
+        long[] words = PageBitmap.toWords(bitmap);
+        for (int i = 0; i < 70; ++i) {
+            if (i != 64 && i != 69) {
+                PageBitmap.setBit(words, i);
+            }
+        }
+
+        assertEquals(64, PageBitmap.nextClearBit(words, 0, 70));
+        assertEquals(64, PageBitmap.nextClearBit(words, 64, 70));
+        assertEquals(69, PageBitmap.nextClearBit(words, 65, 70));
+        assertEquals(-1, PageBitmap.nextClearBit(words, 0, 64));
+        assertEquals(-1, PageBitmap.nextClearBit(words, 65, 69));
+
+        // The padding bits after the last entry are never returned.
+        PageBitmap.setBit(words, 64);
+        PageBitmap.setBit(words, 69);
+        assertEquals(-1, PageBitmap.nextClearBit(words, 0, 70));
+        assertEquals(-1, PageBitmap.nextClearBit(words, 128, 70));
+    }
+
+    @Test
+    public void testCardinality() {
+        Random random = new Random(186);
+        for (int length : LENGTHS) {
+            byte[] bitmap = randomBitmap(random, length);
+            int expected = 0;
+            for (int i = 0; i < 8 * length; ++i) {
+                expected += isSet(bitmap, i) ? 1 : 0;
+            }
+            assertEquals(expected, PageBitmap.cardinality(PageBitmap.toWords(bitmap)));
+        }
+    }
+
+    @Test
+    public void testByteVersionsMatchWords() {
+        Random random = new Random(186);
+        for (int length : LENGTHS) {
+            byte[] bitmap = randomBitmap(random, length);
+            long[] words = PageBitmap.toWords(bitmap);
+            assertEquals(PageBitmap.cardinality(words), PageBitmap.cardinality(bitmap));
+            for (int i = 0; i <= 8 * length; ++i) {
+                assertEquals(PageBitmap.nextSetBit(words, i), PageBitmap.nextSetBit(bitmap, i));
+            }
+        }
+    }
+
+    @Test
+    public void testToWordsReusesWords() {
+        Random random = new Random(186);
+        long[] words = PageBitmap.newWords(17);
+        for (int k = 0; k < 3; ++k) {
+            byte[] bitmap = randomBitmap(random, 17);
+            PageBitmap.toWords(bitmap, bitmap.length, words);
+            assertArrayEquals(PageBitmap.toWords(bitmap), words);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package edu.berkeley.cs186.database.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.berkeley.cs186.database.databox.BoolDataBox;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.FloatDataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.StringDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.query.QueryPlan.PredicateOperator;
+
+import static org.junit.Assert.*;
+
+public class TestScanPredicate {
+    private static final Schema SCHEMA = new Schema(
+        Arrays.asList("i", "f", "b", "s"),
+        Arrays.asList(Type.intType(), Type.floatType(), Type.boolType(), Type.stringType(6)));
+
+    // The values of each column that records and predicates are built from.
+    private static final DataBox[][] VALUES = {
+        {
+            new IntDataBox(Integer.MIN_VALUE), new IntDataBox(-1), new IntDataBox(0),
+            new IntDataBox(1), new IntDataBox(Integer.MAX_VALUE)
+        }, {
+            new FloatDataBox(Float.NEGATIVE_INFINITY), new FloatDataBox(-1.5f),
+            new FloatDataBox(-0.0f), new FloatDataBox(0.0f), new FloatDataBox(1.5f),
+            new FloatDataBox(Float.POSITIVE_INFINITY), new FloatDataBox(Float.NaN)
+        }, {
+            new BoolDataBox(false), new BoolDataBox(true)
+        }, {
+            new StringDataBox("", 6), new StringDataBox("a", 6), new StringDataBox("ab", 6),
+            new StringDataBox("abcdef", 6), new StringDataBox("b", 6)
+        },
+    };
+
+    // Predicate values of a different length than the column's type.
+    private static final DataBox[] OTHER_STRINGS = {
+        new StringDataBox("ab", 2), new StringDataBox("ab", 8), new StringDataBox("abcdefgh", 8)
+    };
+
+    /** Evaluates the predicate the way SelectOperator does. */
+    private static boolean selectMatches(DataBox d, PredicateOperator operator, DataBox value) {
+        switch (operator) {
+        case EQUALS:
+            return d.equals(value);
+        case NOT_EQUALS:
+            return !d.equals(value);
+        case LESS_THAN:
+            return d.compareTo(value) < 0;
+        case LESS_THAN_EQUALS:
+            return d.compareTo(value) <= 0;
+        case GREATER_THAN:
+            return d.compareTo(value) > 0;
+        case GREATER_THAN_EQUALS:
+            return d.compareTo(value) >= 0;
+        default:
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private static List<Record> records() {
+        int n = 0;
+        for (DataBox[] values : VALUES) {
+            n = Math.max(n, values.length);
+        }
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            for (int shift = 0; shift < n; ++shift) {
+                List<DataBox> values = new ArrayList<>();
+                for (int field = 0; field < VALUES.length; ++field) {
+                    DataBox[] column = VALUES[field];
+                    values.add(column[(i + field * shift) % column.length]);
+                }
+                records.add(new Record(values));
+            }
+        }
+        return records;
+    }
+
+    private static void checkAgreesWithSelect(RecordFormat format) {
+        for (Record record : records()) {
+            byte[] bytes = format.toBytes(record);
+            for (int field = 0; field < VALUES.length; ++field) {
+                List<DataBox> values = new ArrayList<>(Arrays.asList(VALUES[field]));
+                if (field == 3) {
+                    values.addAll(Arrays.asList(OTHER_STRINGS));
+                }
+                for (DataBox value : values) {
+                    for (PredicateOperator operator : PredicateOperator.values()) {
+                        ScanPredicate p = new ScanPredicate(SCHEMA, field, operator, value);
+                        // SelectOperator sees the values of records read from a table.
+                        DataBox d = format.getValue(bytes, 0, field);
+                        boolean expected = selectMatches(d, operator, value);
+                        String msg = String.format("%s %s (%s)", record, p, format.isVariableLength()
+                                                   ? "variable length" : "fixed");
+                        assertEquals(msg, expected, p.matches(format, bytes, 0));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFixedAgreesWithSelect() {
+        checkAgreesWithSelect(RecordFormat.fixed(SCHEMA));
+    }
+
+    @Test
+    public void testVariableLengthAgreesWithSelect() {
+        checkAgreesWithSelect(RecordFormat.variableLength(SCHEMA));
+    }
+
+    @Test
+    public void testFloatZeroesAndNaN() {
+        RecordFormat format = RecordFormat.fixed(SCHEMA);
+        Record negativeZero = new Record(Arrays.asList(new IntDataBox(0),
+                                         new FloatDataBox(-0.0f), new BoolDataBox(false),
+                                         new StringDataBox("", 6)));
+        Record nan = new Record(Arrays.asList(new IntDataBox(0), new FloatDataBox(Float.NaN),
+                                new BoolDataBox(false), new StringDataBox("", 6)));
+        ScanPredicate equalsZero = new ScanPredicate(SCHEMA, 1, PredicateOperator.EQUALS,
+                new FloatDataBox(0.0f));
+        ScanPredicate equalsNaN = new ScanPredicate(SCHEMA, 1, PredicateOperator.EQUALS,
+                new FloatDataBox(Float.NaN));
+        ScanPredicate notEqualsNaN = new ScanPredicate(SCHEMA, 1, PredicateOperator.NOT_EQUALS,
+                new FloatDataBox(Float.NaN));
+
+        assertTrue(equalsZero.matches(format, format.toBytes(negativeZero), 0));
+        assertFalse(equalsNaN.matches(format, format.toBytes(nan), 0));
+        assertTrue(notEqualsNaN.matches(format, format.toBytes(nan), 0));
+    }
+}
@@ -0,0 +1,162 @@
+package edu.berkeley.cs186.database.table;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.berkeley.cs186.database.DatabaseException;
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.StringDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.io.Page;
+
+import static org.junit.Assert.*;
+
+public class TestSlottedPageLayout {
+    private static final String TABLENAME = "testtable";
+    private static final int STRING_SIZE = 200;
+
+    private Table table;
+
+    // The values of every record in the table, by record id.
+    private Map<RecordId, List<DataBox>> expected = new HashMap<>();
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void beforeEach() throws IOException {
+        String filename = tempFolder.newFile(TABLENAME + Table.FILENAME_EXTENSION).getAbsolutePath();
+        Schema schema = new Schema(Arrays.asList("x", "s"),
+                                   Arrays.asList(Type.intType(), Type.stringType(STRING_SIZE)));
+        this.table = new Table(TABLENAME, schema, filename, new DummyLockContext(), null,
+                               Table.PageFormat.SLOTTED);
+    }
+
+    @After
+    public void afterEach() {
+        table.close();
+    }
+
+    private static List<DataBox> values(int x, int length) {
+        char[] s = new char[length];
+        Arrays.fill(s, (char) ('a' + x % 26));
+        return Arrays.asList(new IntDataBox(x), new StringDataBox(new String(s), STRING_SIZE));
+    }
+
+    private RecordId add(int x, int length) throws DatabaseException {
+        List<DataBox> values = values(x, length);
+        RecordId rid = table.addRecord(null, values);
+        expected.put(rid, values);
+        return rid;
+    }
+
+    private void checkRecords() throws DatabaseException {
+        assertEquals(expected.size(), table.getNumRecords());
+        for (Map.Entry<RecordId, List<DataBox>> e : expected.entrySet()) {
+            assertEquals(e.getValue(), table.getRecord(null, e.getKey()).getValues());
+        }
+    }
+
+    /** Fills the first data page with records of strings of `length` chars. */
+    private List<RecordId> fillFirstPage(int length) throws DatabaseException {
+        List<RecordId> rids = new ArrayList<>();
+        for (int x = 0; table.getNumDataPages() < 2; ++x) {
+            RecordId rid = add(x, length);
+            if (rid.getPageNum() == 1) {
+                rids.add(rid);
+            }
+        }
+        return rids;
+    }
+
+    @Test
+    public void testShortStringsPackTighterThanFixedWidth() throws DatabaseException {
+        int fixedPerPage = Table.computeNumRecordsPerPage(Page.pageSize, table.getSchema());
+        List<RecordId> rids = fillFirstPage(1);
+        assertTrue(rids.size() > fixedPerPage);
+        checkRecords();
+    }
+
+    @Test
+    public void testPageRunsOutOfRoomBeforeEntries() throws DatabaseException {
+        List<RecordId> rids = fillFirstPage(STRING_SIZE);
+        assertTrue(rids.size() < table.getNumRecordsPerPage());
+        checkRecords();
+    }
+
+    @Test
+    public void testInsertCompactsHeap() throws DatabaseException {
+        List<RecordId> rids = fillFirstPage(150);
+
+        // Deleting every other record leaves room for as many records again,
+        // but only if the holes they leave behind are squeezed out.
+        int numDeleted = 0;
+        for (int i = 0; i < rids.size(); i += 2) {
+            table.deleteRecord(null, rids.get(i));
+            expected.remove(rids.get(i));
+            ++numDeleted;
+        }
+        for (int i = 0; i < numDeleted; ++i) {
+            assertEquals(1, add(1000 + i, 150).getPageNum());
+        }
+        assertEquals(2, table.getNumDataPages());
+        checkRecords();
+    }
+
+    @Test
+    public void testGrowingUpdate() throws DatabaseException {
+        List<RecordId> rids = new ArrayList<>();
+        for (int x = 0; x < 10; ++x) {
+            rids.add(add(x, 1));
+        }
+
+        // Growing a record moves it within its page, but not to another entry.
+        RecordId rid = rids.get(3);
+        List<DataBox> grown = values(3, STRING_SIZE);
+        table.updateRecord(null, grown, rid);
+        expected.put(rid, grown);
+        checkRecords();
+
+        // Shrinking it again overwrites it in place.
+        List<DataBox> shrunk = values(3, 2);
+        table.updateRecord(null, shrunk, rid);
+        expected.put(rid, shrunk);
+        checkRecords();
+    }
+
+    @Test
+    public void testGrowingUpdateCompactsHeap() throws DatabaseException {
+        List<RecordId> rids = fillFirstPage(100);
+
+        // Free up room by deleting a record, then grow its neighbor into it.
+        // The room is only usable once the heap has been compacted.
+        table.deleteRecord(null, rids.get(0));
+        expected.remove(rids.get(0));
+        table.deleteRecord(null, rids.get(2));
+        expected.remove(rids.get(2));
+        RecordId rid = rids.get(1);
+        List<DataBox> grown = values(1, STRING_SIZE);
+        table.updateRecord(null, grown, rid);
+        expected.put(rid, grown);
+        checkRecords();
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void testGrowingUpdateWithoutRoom() throws DatabaseException {
+        // The first page has less room left than one more short record needs.
+        List<RecordId> rids = fillFirstPage(20);
+        table.updateRecord(null, values(0, STRING_SIZE), rids.get(0));
+    }
+}
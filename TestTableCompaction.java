@@ -0,0 +1,121 @@
+package edu.berkeley.cs186.database.table;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.berkeley.cs186.database.DatabaseException;
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.FloatDataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.index.BPlusTree;
+import edu.berkeley.cs186.database.index.BPlusTreeException;
+
+import static org.junit.Assert.*;
+
+public class TestTableCompaction {
+    private static final String TABLENAME = "testtable";
+
+    private Table table;
+    private BPlusTree index;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void beforeEach() throws IOException, BPlusTreeException {
+        String filename = tempFolder.newFile(TABLENAME + Table.FILENAME_EXTENSION).getAbsolutePath();
+        Schema schema = new Schema(Arrays.asList("x", "y"),
+                                   Arrays.asList(Type.intType(), Type.floatType()));
+        this.table = new Table(TABLENAME, schema, filename, new DummyLockContext(), null);
+        String indexFilename = tempFolder.newFile("x" + BPlusTree.FILENAME_EXTENSION).getAbsolutePath();
+        this.index = new BPlusTree(indexFilename, Type.intType(), 2, new DummyLockContext(), null);
+    }
+
+    @After
+    public void afterEach() {
+        index.close();
+        table.close();
+    }
+
+    private static List<DataBox> values(int x) {
+        return Arrays.asList(new IntDataBox(x), new FloatDataBox(x));
+    }
+
+    /**
+     * Fills three pages, indexing every record in `index`, then deletes all
+     * but the first `keep` records of each of the last two pages, and returns
+     * the x values left in the table.
+     */
+    private List<Integer> fillAndThin(int keep) throws DatabaseException, BPlusTreeException {
+        int perPage = table.getNumRecordsPerPage();
+        List<RecordId> rids = new ArrayList<>();
+        for (int x = 0; x < 3 * perPage; ++x) {
+            RecordId rid = table.addRecord(null, values(x));
+            index.put(null, new IntDataBox(x), rid);
+            rids.add(rid);
+        }
+
+        List<Integer> remaining = new ArrayList<>();
+        for (int x = 0; x < 3 * perPage; ++x) {
+            if (x < perPage || x % perPage < keep) {
+                remaining.add(x);
+            } else {
+                table.deleteRecord(null, rids.get(x));
+                index.remove(null, new IntDataBox(x));
+            }
+        }
+        return remaining;
+    }
+
+    @Test
+    public void testCompactMovesIndexEntries() throws DatabaseException, BPlusTreeException {
+        table.addIndex("x", index);
+        List<Integer> remaining = fillAndThin(2);
+
+        int moved = remaining.get(remaining.size() - 1);
+        RecordId before = index.get(null, new IntDataBox(moved)).get();
+        assertEquals(1, table.compact(null, 0.5f));
+        assertNotEquals(before, index.get(null, new IntDataBox(moved)).get());
+
+        // Every index entry points at its record's new record id.
+        Iterator<RecordId> rids = index.scanAll(null);
+        for (int x : remaining) {
+            Optional<RecordId> rid = index.get(null, new IntDataBox(x));
+            assertTrue("x " + x, rid.isPresent());
+            assertEquals(x, table.getRecord(null, rid.get()).getValues().get(0).getInt());
+            assertTrue(rids.hasNext());
+            rids.next();
+        }
+        assertFalse(rids.hasNext());
+        assertEquals(remaining.size(), table.getNumRecords());
+    }
+
+    @Test
+    public void testRemovedIndexIsNotUpdated() throws DatabaseException, BPlusTreeException {
+        table.addIndex("x", index);
+        table.removeIndex("x");
+        List<Integer> remaining = fillAndThin(2);
+        int moved = remaining.get(remaining.size() - 1);
+        RecordId before = index.get(null, new IntDataBox(moved)).get();
+
+        assertEquals(1, table.compact(null, 0.5f));
+        assertEquals(before, index.get(null, new IntDataBox(moved)).get());
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void testAddIndexOnMissingColumn() throws DatabaseException {
+        table.addIndex("z", index);
+    }
+}
@@ -0,0 +1,183 @@
+package edu.berkeley.cs186.database.table;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.berkeley.cs186.database.DatabaseException;
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.FloatDataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.query.QueryPlan.PredicateOperator;
+import edu.berkeley.cs186.database.table.stats.Bucket;
+import edu.berkeley.cs186.database.table.stats.TableStats;
+
+import static org.junit.Assert.*;
+
+public class TestTableSideFiles {
+    private static final String TABLENAME = "testtable";
+
+    private String filename;
+    private Schema schema;
+    private Table table;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void beforeEach() throws IOException {
+        this.filename = tempFolder.newFile(TABLENAME + Table.FILENAME_EXTENSION).getAbsolutePath();
+        this.schema = new Schema(Arrays.asList("x", "y"),
+                                 Arrays.asList(Type.intType(), Type.floatType()));
+        this.table = new Table(TABLENAME, schema, filename, new DummyLockContext(), null);
+    }
+
+    @After
+    public void afterEach() {
+        if (table != null) {
+            table.close();
+        }
+    }
+
+    private static List<DataBox> values(int x) {
+        return Arrays.asList(new IntDataBox(x), new FloatDataBox(x));
+    }
+
+    private void reload() throws DatabaseException {
+        table.close();
+        table = new Table(TABLENAME, filename, new DummyLockContext(), null);
+    }
+
+    private List<Integer> scan(List<ScanPredicate> predicates) {
+        Iterator<Record> iter = table.iterator(null, null, predicates, 0);
+        List<Integer> xs = new ArrayList<>();
+        while (iter.hasNext()) {
+            xs.add(iter.next().getValues().get(0).getInt());
+        }
+        return xs;
+    }
+
+    @Test
+    public void testReloadKeepsRecordCountAndFreePages() throws DatabaseException {
+        int numRecords = 3 * table.getNumRecordsPerPage();
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < numRecords; ++i) {
+            rids.add(table.addRecord(null, values(i)));
+        }
+        // Free a slot on the first data page, which is otherwise full.
+        RecordId deleted = rids.get(1);
+        table.deleteRecord(null, deleted);
+
+        reload();
+        assertEquals(numRecords - 1, table.getNumRecords());
+        assertEquals(3, table.getNumDataPages());
+
+        // The only free slot in the table is the one we freed.
+        RecordId rid = table.addRecord(null, values(-1));
+        assertEquals(deleted.getPageNum(), rid.getPageNum());
+        assertEquals(numRecords, table.getNumRecords());
+        assertEquals(3, table.getNumDataPages());
+    }
+
+    @Test
+    public void testReloadWithoutCloseRecountsRecords() throws DatabaseException {
+        int numRecords = 2 * table.getNumRecordsPerPage();
+        List<RecordId> rids = new ArrayList<>();
+        for (int i = 0; i < numRecords; ++i) {
+            rids.add(table.addRecord(null, values(i)));
+        }
+        table.deleteRecord(null, rids.get(0));
+
+        // The table is never closed, so its counts are never saved, as if the
+        // database had crashed.
+        table = new Table(TABLENAME, filename, new DummyLockContext(), null);
+        assertEquals(numRecords - 1, table.getNumRecords());
+        assertEquals(numRecords - 1, table.getStats().getNumRecords());
+        RecordId rid = table.addRecord(null, values(-1));
+        assertEquals(rids.get(0).getPageNum(), rid.getPageNum());
+    }
+
+    @Test
+    public void testReloadKeepsZoneMap() throws DatabaseException {
+        int numRecords = 4 * table.getNumRecordsPerPage();
+        for (int i = 0; i < numRecords; ++i) {
+            table.addRecord(null, values(i));
+        }
+        reload();
+
+        // Only the last page can hold x >= numRecords - 1, but every page has
+        // to agree with the predicate for the scan to be correct.
+        ScanPredicate p = new ScanPredicate(schema, 0, PredicateOperator.GREATER_THAN_EQUALS,
+                                            new IntDataBox(numRecords - 1));
+        assertEquals(Collections.singletonList(numRecords - 1),
+                     scan(Collections.singletonList(p)));
+
+        ScanPredicate q = new ScanPredicate(schema, 1, PredicateOperator.LESS_THAN,
+                                            new FloatDataBox(2));
+        assertEquals(Arrays.asList(0, 1), scan(Collections.singletonList(q)));
+
+        // Records added after the reload are summarized too.
+        table.addRecord(null, values(numRecords));
+        assertEquals(Arrays.asList(numRecords - 1, numRecords),
+                     scan(Collections.singletonList(p)));
+    }
+
+    @Test
+    public void testReloadKeepsStatistics() throws DatabaseException {
+        int numRecords = 2 * table.getNumRecordsPerPage() + 1;
+        for (int i = 0; i < numRecords; ++i) {
+            table.addRecord(null, values(i));
+        }
+        TableStats before = table.buildStatistics(null, 4);
+        table.addRecord(null, values(numRecords));
+
+        reload();
+        TableStats after = table.getStats();
+        assertEquals(numRecords + 1, after.getNumRecords());
+        assertEquals(before.getNumPages(), after.getNumPages());
+        assertEquals(before.getHistograms().size(), after.getHistograms().size());
+        for (int i = 0; i < before.getHistograms().size(); ++i) {
+            Bucket<Float>[] expected = before.getHistograms().get(i).getAllBuckets();
+            Bucket<Float>[] actual = after.getHistograms().get(i).getAllBuckets();
+            assertEquals(expected.length, actual.length);
+            for (int j = 0; j < expected.length; ++j) {
+                assertEquals(expected[j].getStart(), actual[j].getStart());
+                assertEquals(expected[j].getEnd(), actual[j].getEnd());
+                assertEquals(expected[j].getCount(), actual[j].getCount());
+                assertEquals(expected[j].getDistinctCount(), actual[j].getDistinctCount());
+            }
+        }
+    }
+
+    @Test
+    public void testDeleteFiles() throws DatabaseException {
+        table.addRecord(null, values(0));
+        table.close();
+        table = null;
+
+        File[] files = {
+            new File(filename),
+            new File(filename + FreeSpaceMap.FILENAME_EXTENSION),
+            new File(filename + ZoneMap.FILENAME_EXTENSION),
+        };
+        for (File file : files) {
+            assertTrue(file.exists());
+        }
+        assertTrue(Table.deleteFiles(filename));
+        for (File file : files) {
+            assertFalse(file.exists());
+        }
+    }
+}
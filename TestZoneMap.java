@@ -0,0 +1,182 @@
+package edu.berkeley.cs186.database.table;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.berkeley.cs186.database.concurrency.DummyLockContext;
+import edu.berkeley.cs186.database.databox.DataBox;
+import edu.berkeley.cs186.database.databox.FloatDataBox;
+import edu.berkeley.cs186.database.databox.IntDataBox;
+import edu.berkeley.cs186.database.databox.StringDataBox;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.query.QueryPlan.PredicateOperator;
+
+import static org.junit.Assert.*;
+
+public class TestZoneMap {
+    private static final Schema SCHEMA = new Schema(
+        Arrays.asList("i", "f", "s"),
+        Arrays.asList(Type.intType(), Type.floatType(), Type.stringType(20)));
+
+    private static final float[] FLOATS = {
+        Float.NEGATIVE_INFINITY, -1.5f, -0.0f, 0.0f, 1.5f, Float.POSITIVE_INFINITY, Float.NaN
+    };
+    private static final String[] STRINGS = {
+        "", "a", "aaaaaaaaaaaaaaaax", "aaaaaaaaaaaaaaaaz", "b"
+    };
+
+    private ZoneMap zoneMap;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void beforeEach() throws IOException {
+        String filename = tempFolder.newFile("testtable" + Table.FILENAME_EXTENSION).getAbsolutePath();
+        this.zoneMap = new ZoneMap(new DummyLockContext(), filename, SCHEMA, new PageLatches(),
+                                   true, null);
+        this.zoneMap.markPopulated(null);
+    }
+
+    @After
+    public void afterEach() {
+        zoneMap.close();
+    }
+
+    private static Record record(int i, float f, String s) {
+        return new Record(Arrays.asList(new IntDataBox(i), new FloatDataBox(f),
+                                        new StringDataBox(s, 20)));
+    }
+
+    private boolean mayMatch(int pageNum, int field, PredicateOperator operator, DataBox value) {
+        ScanPredicate p = new ScanPredicate(SCHEMA, field, operator, value);
+        return zoneMap.mayMatch(null, pageNum, Collections.singletonList(p));
+    }
+
+    @Test
+    public void testSkipsPagesOutOfRange() {
+        List<Record> records = new ArrayList<>();
+        for (int i = 10; i <= 20; ++i) {
+            records.add(record(i, i, "a"));
+        }
+        zoneMap.addRecords(null, 1, records);
+
+        IntDataBox ten = new IntDataBox(10);
+        IntDataBox twenty = new IntDataBox(20);
+        assertFalse(mayMatch(1, 0, PredicateOperator.LESS_THAN, ten));
+        assertTrue(mayMatch(1, 0, PredicateOperator.LESS_THAN_EQUALS, ten));
+        assertFalse(mayMatch(1, 0, PredicateOperator.GREATER_THAN, twenty));
+        assertTrue(mayMatch(1, 0, PredicateOperator.GREATER_THAN_EQUALS, twenty));
+        assertTrue(mayMatch(1, 0, PredicateOperator.EQUALS, new IntDataBox(15)));
+        assertFalse(mayMatch(1, 0, PredicateOperator.EQUALS, new IntDataBox(21)));
+        assertFalse(mayMatch(1, 1, PredicateOperator.LESS_THAN, new FloatDataBox(9.5f)));
+        assertTrue(mayMatch(1, 1, PredicateOperator.LESS_THAN, new FloatDataBox(10.5f)));
+
+        // Every predicate has to be satisfiable.
+        ScanPredicate p = new ScanPredicate(SCHEMA, 0, PredicateOperator.GREATER_THAN, ten);
+        ScanPredicate q = new ScanPredicate(SCHEMA, 2, PredicateOperator.GREATER_THAN,
+                                            new StringDataBox("b", 20));
+        assertTrue(zoneMap.mayMatch(null, 1, Collections.singletonList(p)));
+        assertFalse(zoneMap.mayMatch(null, 1, Arrays.asList(p, q)));
+    }
+
+    @Test
+    public void testPagesWithoutSummaryMayMatch() {
+        IntDataBox zero = new IntDataBox(0);
+
+        // Neither page 2 nor page 100000 has ever been summarized; page
+        // 100000's summary page hasn't even been allocated.
+        zoneMap.addRecords(null, 1, Collections.singletonList(record(5, 5, "a")));
+        assertTrue(mayMatch(2, 0, PredicateOperator.EQUALS, zero));
+        assertTrue(mayMatch(100000, 0, PredicateOperator.EQUALS, zero));
+
+        // Nor has a page whose summary has been cleared.
+        assertFalse(mayMatch(1, 0, PredicateOperator.EQUALS, zero));
+        zoneMap.clear(null, 1);
+        assertTrue(mayMatch(1, 0, PredicateOperator.EQUALS, zero));
+    }
+
+    @Test
+    public void testFloatEqualityAgreesWithScanPredicate() {
+        zoneMap.addRecords(null, 1, Collections.singletonList(record(0, -0.0f, "")));
+        zoneMap.addRecords(null, 2, Collections.singletonList(record(0, 0.0f, "")));
+        zoneMap.addRecords(null, 3, Arrays.asList(record(0, Float.NaN, ""), record(0, 1.0f, "")));
+        zoneMap.addRecords(null, 4, Collections.singletonList(record(0, Float.NaN, "")));
+
+        // -0.0 == 0.0, even though Float.compare orders them.
+        assertTrue(mayMatch(1, 1, PredicateOperator.EQUALS, new FloatDataBox(0.0f)));
+        assertTrue(mayMatch(2, 1, PredicateOperator.EQUALS, new FloatDataBox(-0.0f)));
+        assertFalse(mayMatch(1, 1, PredicateOperator.NOT_EQUALS, new FloatDataBox(0.0f)));
+
+        // NaN is the largest value of page 3, which doesn't bound its other
+        // values from above, and equals nothing, not even itself.
+        assertTrue(mayMatch(3, 1, PredicateOperator.EQUALS, new FloatDataBox(1.0f)));
+        assertTrue(mayMatch(3, 1, PredicateOperator.EQUALS, new FloatDataBox(2.0f)));
+        assertFalse(mayMatch(3, 1, PredicateOperator.EQUALS, new FloatDataBox(0.5f)));
+        assertFalse(mayMatch(4, 1, PredicateOperator.EQUALS, new FloatDataBox(Float.NaN)));
+        assertTrue(mayMatch(4, 1, PredicateOperator.NOT_EQUALS, new FloatDataBox(Float.NaN)));
+    }
+
+    @Test
+    public void testStringPrefixes() {
+        // Only the first 16 characters of a string are summarized, and both
+        // of these strings have the same 16 first characters.
+        zoneMap.addRecords(null, 1, Arrays.asList(record(0, 0, "aaaaaaaaaaaaaaaax"),
+                           record(0, 0, "aaaaaaaaaaaaaaaaz")));
+        assertTrue(mayMatch(1, 2, PredicateOperator.EQUALS,
+                            new StringDataBox("aaaaaaaaaaaaaaaay", 20)));
+        assertTrue(mayMatch(1, 2, PredicateOperator.GREATER_THAN,
+                            new StringDataBox("aaaaaaaaaaaaaaaaz", 20)));
+        assertFalse(mayMatch(1, 2, PredicateOperator.GREATER_THAN, new StringDataBox("b", 20)));
+        assertFalse(mayMatch(1, 2, PredicateOperator.LESS_THAN, new StringDataBox("a", 20)));
+    }
+
+    @Test
+    public void testNeverSkipsMatchingPage() {
+        Random random = new Random(186);
+        RecordFormat format = RecordFormat.fixed(SCHEMA);
+        for (int pageNum = 1; pageNum <= 50; ++pageNum) {
+            List<Record> records = new ArrayList<>();
+            for (int k = 0; k < 1 + random.nextInt(4); ++k) {
+                records.add(record(random.nextInt(10) - 5, FLOATS[random.nextInt(FLOATS.length)],
+                                   STRINGS[random.nextInt(STRINGS.length)]));
+            }
+            zoneMap.addRecords(null, pageNum, records);
+
+            List<DataBox> values = new ArrayList<>();
+            for (int i = -6; i <= 6; ++i) {
+                values.add(new IntDataBox(i));
+            }
+            for (float f : FLOATS) {
+                values.add(new FloatDataBox(f));
+            }
+            for (String s : STRINGS) {
+                values.add(new StringDataBox(s, 20));
+            }
+            for (DataBox value : values) {
+                int field = value instanceof IntDataBox ? 0 : value instanceof FloatDataBox ? 1 : 2;
+                for (PredicateOperator operator : PredicateOperator.values()) {
+                    ScanPredicate p = new ScanPredicate(SCHEMA, field, operator, value);
+                    boolean anyMatches = false;
+                    for (Record record : records) {
+                        anyMatches |= p.matches(format, format.toBytes(record), 0);
+                    }
+                    if (anyMatches) {
+                        String msg = String.format("%s on %s", p, records);
+                        assertTrue(msg, zoneMap.mayMatch(null, pageNum, Collections.singletonList(p)));
+                    }
+                }
+            }
+        }
+    }
+}
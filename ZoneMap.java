@@ -0,0 +1,350 @@
+package edu.berkeley.cs186.database.table;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import edu.berkeley.cs186.database.BaseTransaction;
+import edu.berkeley.cs186.database.common.Buffer;
+import edu.berkeley.cs186.database.concurrency.LockContext;
+import edu.berkeley.cs186.database.databox.Type;
+import edu.berkeley.cs186.database.databox.TypeId;
+import edu.berkeley.cs186.database.io.Page;
+import edu.berkeley.cs186.database.io.PageAllocator;
+import edu.berkeley.cs186.database.query.QueryPlan;
+
+/**
+ * # Overview
+ * A ZoneMap records, for every data page of a table, the smallest and largest
+ * value of each column among the records on the page. A scan with
+ * ScanPredicates (see PageScanIterator) can then skip every page whose range
+ * of values can't satisfy them without reading any of the page's records. On
+ * tables whose records are added roughly in the order of some column (e.g.
+ * time-ordered event tables), a range predicate on that column skips all but
+ * a handful of pages.
+ *
+ * Like a FreeSpaceMap, a ZoneMap is persisted in its own file next to the
+ * table's file (e.g. "t.table.zm" for "t.table").
+ *
+ * # Summaries
+ * The summary of a page is only ever widened: adding a record (or updating
+ * one) widens the ranges of the page to include the record's values, but
+ * deleting a record does not narrow them, since that would require reading
+ * every remaining record of the page. A summary may therefore be wider than
+ * the records on the page, but never narrower, so a page is only skipped if
+ * it really can't hold a matching record. When the last record of a page is
+ * deleted, its summary is reset.
+ *
+ * Ranges are stored as serialized values. Strings are truncated to their
+ * first STRING_PREFIX_LENGTH bytes, which still bound the strings of the page
+ * from below and above, just less tightly.
+ *
+ * # Storage Format
+ *   1. The first page of the file is a header page containing a 4-byte
+ *      version number, or -1 if the map hasn't been populated yet.
+ *   2. All remaining pages are summary pages, each an array of
+ *      summariesPerPage summaries. The summary of data page p is summary
+ *      p % summariesPerPage of summary page 1 + p / summariesPerPage.
+ *
+ * A summary is a 1-byte flag, which is 1 if the summary holds the values of
+ * the page's records (and 0 otherwise), followed by the smallest and then the
+ * largest value of every summarized column. Summary pages are allocated
+ * lazily. A page whose summary is 0, or hasn't been allocated, usually has no
+ * records, but it is never skipped: a missing summary tells us nothing about
+ * the page.
+ *
+ * The summary of a data page is only modified with the data page
+ * write-latched (see Table), and mayMatch read-latches the data page to read
+ * its summary, so summaries of different pages are read and written
+ * concurrently, even when they share a summary page. Only allocating summary
+ * pages is synchronized.
+ */
+class ZoneMap implements Closeable {
+    public static final String FILENAME_EXTENSION = ".zm";
+
+    // The version of the storage format described above.
+    private static final int VERSION = 1;
+
+    // The number of bytes of a string that are summarized.
+    private static final int STRING_PREFIX_LENGTH = 16;
+
+    // The allocator used to persist the zone map.
+    private PageAllocator allocator;
+
+    private Schema schema;
+
+    // The latches of the table's data pages; see mayMatch.
+    private PageLatches latches;
+
+    // The number of bytes of column i that are summarized, and the offset of
+    // its smallest value within a summary. Its largest value follows. Columns
+    // that didn't fit in a summary have a width of 0.
+    private int[] widths;
+    private int[] offsets;
+
+    // The size of a summary, and the number of them on a summary page.
+    private int summarySizeInBytes;
+    private int summariesPerPage;
+
+    // Constructors //////////////////////////////////////////////////////////////
+    /**
+     * Open the zone map of the table with schema `schema` persisted in
+     * `tableFilename`, whose data pages are latched with `latches`. If `wipe`
+     * is true, or if the table has never had a zone map, an empty map is
+     * created; use isNew to tell the two cases apart.
+     */
+    ZoneMap(LockContext lockContext, String tableFilename, Schema schema, PageLatches latches,
+            boolean wipe, BaseTransaction transaction) {
+        String filename = tableFilename + FILENAME_EXTENSION;
+        this.allocator = new PageAllocator(lockContext, filename, wipe, transaction);
+        this.schema = schema;
+        this.latches = latches;
+
+        List<Type> types = schema.getFieldTypes();
+        this.widths = new int[types.size()];
+        this.offsets = new int[types.size()];
+        int offset = 1;
+        for (int i = 0; i < types.size(); ++i) {
+            int width = types.get(i).getSizeInBytes();
+            if (types.get(i).getTypeId() == TypeId.STRING) {
+                width = Math.min(width, STRING_PREFIX_LENGTH);
+            }
+            if (offset + 2 * width > Page.pageSize) {
+                width = 0;
+            }
+            widths[i] = width;
+            offsets[i] = offset;
+            offset += 2 * width;
+        }
+        this.summarySizeInBytes = offset;
+        this.summariesPerPage = Page.pageSize / summarySizeInBytes;
+
+        if (allocator.getNumPages() == 0) {
+            Page headerPage = allocator.fetchPage(transaction, allocator.allocPage(transaction));
+            assert(0 == headerPage.getPageNum());
+            headerPage.getBuffer(transaction).putInt(-1);
+        }
+    }
+
+    // Accessors /////////////////////////////////////////////////////////////////
+    /**
+     * Returns true if this map has not yet been populated, i.e. it was just
+     * created and markPopulated has not been called on it.
+     */
+    boolean isNew(BaseTransaction transaction) {
+        return getHeaderBuffer(transaction).getInt() != VERSION;
+    }
+
+    /**
+     * Returns false if no record on data page `pageNum` can satisfy every one
+     * of `predicates`, and true if some record might. Pages without a summary
+     * might.
+     */
+    boolean mayMatch(BaseTransaction transaction, int pageNum, List<ScanPredicate> predicates) {
+        // Read the summary whole, rather than half before and half after some
+        // other thread writes it.
+        byte[] summary;
+        Lock latch = latches.readLatch(pageNum);
+        latch.lock();
+        try {
+            summary = readSummary(transaction, pageNum);
+        } finally {
+            latch.unlock();
+        }
+        if (summary == null || summary[0] == 0) {
+            return true;
+        }
+        for (ScanPredicate predicate : predicates) {
+            if (!mayMatch(summary, predicate)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Modifiers /////////////////////////////////////////////////////////////////
+    /**
+     * Marks this map as populated. Until this is called, isNew returns true
+     * and a reloaded table rebuilds the map from its data pages.
+     */
+    synchronized void markPopulated(BaseTransaction transaction) {
+        getHeaderBuffer(transaction).putInt(VERSION);
+    }
+
+    /**
+     * Widens the summary of data page `pageNum`, which must be write-latched,
+     * to include `records`.
+     */
+    void addRecords(BaseTransaction transaction, int pageNum, List<Record> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        byte[] summary = readSummary(transaction, pageNum);
+        if (summary == null) {
+            summary = new byte[summarySizeInBytes];
+        }
+        for (Record record : records) {
+            widen(summary, record);
+        }
+        writeSummary(transaction, pageNum, summary);
+    }
+
+    /**
+     * Resets the summary of data page `pageNum`, which must be write-latched
+     * and has no records left.
+     */
+    void clear(BaseTransaction transaction, int pageNum) {
+        if (readSummary(transaction, pageNum) != null) {
+            writeSummary(transaction, pageNum, new byte[summarySizeInBytes]);
+        }
+    }
+
+    public void close() {
+        allocator.close();
+    }
+
+    // Helpers ///////////////////////////////////////////////////////////////////
+    private Buffer getHeaderBuffer(BaseTransaction transaction) {
+        return allocator.fetchPage(transaction, 0).getBuffer(transaction);
+    }
+
+    /**
+     * Returns the summary of data page `pageNum`, or null if its summary page
+     * hasn't been allocated.
+     */
+    private byte[] readSummary(BaseTransaction transaction, int pageNum) {
+        int k = 1 + pageNum / summariesPerPage;
+        if (k >= allocator.getNumPages()) {
+            return null;
+        }
+        byte[] summary = new byte[summarySizeInBytes];
+        Buffer buf = allocator.fetchPage(transaction, k).getBuffer(transaction);
+        buf.position((pageNum % summariesPerPage) * summarySizeInBytes);
+        buf.get(summary);
+        return summary;
+    }
+
+    private void writeSummary(BaseTransaction transaction, int pageNum, byte[] summary) {
+        int k = 1 + pageNum / summariesPerPage;
+        if (k >= allocator.getNumPages()) {
+            allocateSummaryPages(transaction, k);
+        }
+        Buffer buf = allocator.fetchPage(transaction, k).getBuffer(transaction);
+        buf.position((pageNum % summariesPerPage) * summarySizeInBytes);
+        buf.put(summary);
+    }
+
+    /** Allocates summary pages until summary page `k` exists. */
+    private synchronized void allocateSummaryPages(BaseTransaction transaction, int k) {
+        while (k >= allocator.getNumPages()) {
+            allocator.allocPage(transaction);
+        }
+    }
+
+    private void widen(byte[] summary, Record record) {
+        boolean empty = summary[0] == 0;
+        summary[0] = 1;
+        for (int i = 0; i < widths.length; ++i) {
+            if (widths[i] == 0) {
+                continue;
+            }
+            byte[] value = record.getValue(i).toBytes();
+            int min = offsets[i];
+            int max = offsets[i] + widths[i];
+            if (empty || compare(i, value, 0, summary, min, widths[i]) < 0) {
+                System.arraycopy(value, 0, summary, min, widths[i]);
+            }
+            if (empty || compare(i, value, 0, summary, max, widths[i]) > 0) {
+                System.arraycopy(value, 0, summary, max, widths[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns false if no value between the smallest and largest values of
+     * `predicate`'s column in `summary` can satisfy `predicate`.
+     */
+    private boolean mayMatch(byte[] summary, ScanPredicate predicate) {
+        int field = predicate.getField();
+        Type type = schema.getFieldTypes().get(field);
+        if (widths[field] == 0 || predicate.getValue().type().getTypeId() != type.getTypeId()) {
+            return true;
+        }
+
+        // ScanPredicate orders floats by Float.compare, as we do, but compares
+        // them for equality with ==, under which -0.0 equals 0.0 and NaN
+        // equals nothing. Float.compare orders NaN above every other float, so
+        // a column whose largest value is NaN may hold any value.
+        QueryPlan.PredicateOperator operator = predicate.getOperator();
+        if (type.getTypeId() == TypeId.FLOAT &&
+                (operator == QueryPlan.PredicateOperator.EQUALS ||
+                 operator == QueryPlan.PredicateOperator.NOT_EQUALS)) {
+            float x = predicate.getValue().getFloat();
+            float min = Float.intBitsToFloat(getInt(summary, offsets[field]));
+            float max = Float.intBitsToFloat(getInt(summary, offsets[field] + widths[field]));
+            if (operator == QueryPlan.PredicateOperator.EQUALS) {
+                return min <= x && (x <= max || Float.isNaN(max));
+            }
+            return !(min == x && max == x);
+        }
+
+        // The predicate's value is compared against the summarized prefix of
+        // the column. If the column is truncated, a tie doesn't tell us which
+        // of the two is bigger, so we only rule out a page on a strict
+        // inequality.
+        byte[] value = predicate.getValue().toBytes();
+        int n = Math.min(widths[field], value.length);
+        boolean exact = type.getTypeId() != TypeId.STRING;
+        int cmpMin = compare(field, value, 0, summary, offsets[field], n);
+        int cmpMax = compare(field, value, 0, summary, offsets[field] + widths[field], n);
+        int tie = exact ? 0 : 1;
+        switch (operator) {
+        case EQUALS:
+            return cmpMin >= 0 && cmpMax <= 0;
+        case NOT_EQUALS:
+            return !exact || cmpMin != 0 || cmpMax != 0;
+        case LESS_THAN:
+            return cmpMin + tie > 0;
+        case LESS_THAN_EQUALS:
+            return cmpMin >= 0;
+        case GREATER_THAN:
+            return cmpMax - tie < 0;
+        case GREATER_THAN_EQUALS:
+            return cmpMax <= 0;
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Compares the first `n` bytes of value `a` at `i` against the first `n`
+     * bytes of value `b` at `j`, both serialized values of column `field`.
+     * Integers and floats are compared numerically, and booleans and strings
+     * bytewise, as in ScanPredicate.
+     */
+    private int compare(int field, byte[] a, int i, byte[] b, int j, int n) {
+        switch (schema.getFieldTypes().get(field).getTypeId()) {
+        case INT:
+            return Integer.compare(getInt(a, i), getInt(b, j));
+        case FLOAT:
+            return Float.compare(Float.intBitsToFloat(getInt(a, i)),
+                                 Float.intBitsToFloat(getInt(b, j)));
+        default:
+            for (int k = 0; k < n; ++k) {
+                int cmp = Integer.compare(a[i + k] & 0xFF, b[j + k] & 0xFF);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        }
+    }
+
+    // Reads a 4-byte big-endian integer (the format ByteBuffer::putInt writes).
+    private static int getInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) |
+               ((bytes[offset + 1] & 0xFF) << 16) |
+               ((bytes[offset + 2] & 0xFF) << 8) |
+               (bytes[offset + 3] & 0xFF);
+    }
+}